@@ -0,0 +1,165 @@
+package behaviors;
+
+import engine.Behavior;
+import engine.ChangeListener;
+import engine.Layer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks every behavior of a given class and reports, once per frame, which
+ * of them were added, which were removed, and which changed. A behavior
+ * counts as changed when it calls Behavior.markChanged, which its setters
+ * should do (like PositionBehavior3d.setPosition). Changed behaviors are kept
+ * in a list as they are marked, so detecting them costs nothing for the
+ * behaviors that didn't change.
+ *
+ * @param <T> The type of behavior being tracked.
+ */
+public class ChangeTracker<T extends Behavior> extends AbstractCollection<T> implements ChangeListener {
+
+    /**
+     * Changes are detected in this layer, after the update layers and before
+     * the render layers, so rendering sees the changes made this frame.
+     */
+    public static final Layer DETECT = new Layer(15);
+
+    public static <T extends Behavior> ChangeTracker<T> track(Class<T> c) {
+        return Behavior.track(c, new ChangeTracker());
+    }
+
+    private final Map<T, Entry<T>> entries = new HashMap();
+    private final List<Entry<T>> addedSinceDetect = new ArrayList();
+    private final List<T> removedSinceDetect = new ArrayList();
+    private final List<Entry<T>> changedSinceDetect = new ArrayList();
+    private Behavior detector;
+
+    private final List<T> added = new ArrayList();
+    private final List<T> changed = new ArrayList();
+    private final List<T> removed = new ArrayList();
+
+    @Override
+    public synchronized boolean add(T t) {
+        if (entries.containsKey(t)) {
+            return false;
+        }
+        if (detector == null) {
+            detector = DETECT.onStep(this::detect);
+        }
+        Entry<T> e = new Entry(t);
+        entries.put(t, e);
+        addedSinceDetect.add(e);
+        return true;
+    }
+
+    /**
+     * Returns the behaviors added before the last detection, which are not
+     * also reported as changed.
+     *
+     * @return The added behaviors.
+     */
+    public List<T> added() {
+        return Collections.unmodifiableList(added);
+    }
+
+    @Override
+    public synchronized void changed(Behavior b) {
+        Entry<T> e = entries.get(b);
+        if (e != null && !e.fresh && !e.changed) {
+            e.changed = true;
+            changedSinceDetect.add(e);
+        }
+    }
+
+    /**
+     * Returns the behaviors that were marked changed between the last two
+     * detections.
+     *
+     * @return The changed behaviors.
+     */
+    public List<T> changed() {
+        return Collections.unmodifiableList(changed);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return entries.containsKey(o);
+    }
+
+    /**
+     * Publishes the behaviors that were added, marked changed or removed since
+     * the last detection. This runs automatically each frame in the DETECT
+     * layer, but can be called manually.
+     */
+    public synchronized void detect() {
+        changed.clear();
+        for (int i = 0; i < changedSinceDetect.size(); i++) {
+            Entry<T> e = changedSinceDetect.get(i);
+            e.changed = false;
+            if (!e.removed) {
+                changed.add(e.behavior);
+            }
+        }
+        changedSinceDetect.clear();
+        added.clear();
+        for (int i = 0; i < addedSinceDetect.size(); i++) {
+            Entry<T> e = addedSinceDetect.get(i);
+            if (!e.removed) {
+                e.fresh = false;
+                added.add(e.behavior);
+            }
+        }
+        addedSinceDetect.clear();
+        removed.clear();
+        removed.addAll(removedSinceDetect);
+        removedSinceDetect.clear();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return Collections.unmodifiableSet(entries.keySet()).iterator();
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        Entry<T> e = entries.remove(o);
+        if (e == null) {
+            return false;
+        }
+        e.removed = true;
+        if (!e.fresh) {
+            removedSinceDetect.add(e.behavior);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the behaviors removed before the last detection. Behaviors that
+     * were added and removed between two detections are not reported at all.
+     *
+     * @return The removed behaviors.
+     */
+    public List<T> removed() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    private static class Entry<T extends Behavior> {
+
+        private final T behavior;
+        private boolean fresh = true, changed, removed;
+
+        private Entry(T behavior) {
+            this.behavior = behavior;
+        }
+    }
+}
@@ -22,7 +22,7 @@ public class FPSBehavior extends Behavior {
         fps = tList.size() / 5;
 
         timeElapsed += dt();
-        if (timeElapsed > .25) {
+        if (timeElapsed > .25 && Window.window != null) {
             timeElapsed -= .25;
             Window.window.setTitle("FPS: " + Math.round(fps));
         }
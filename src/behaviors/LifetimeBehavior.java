@@ -5,8 +5,14 @@ import static engine.Core.dt;
 
 public class LifetimeBehavior extends Behavior {
 
+    // The time left, so it can be changed at any point and is saved in snapshots as-is
     public double lifetime = 0;
 
+    @Override
+    public void resetInner() {
+        lifetime = 0;
+    }
+
     @Override
     public void step() {
         lifetime -= dt();
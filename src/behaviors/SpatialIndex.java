@@ -0,0 +1,353 @@
+package behaviors;
+
+import behaviors._2d.PositionBehavior2d;
+import behaviors._3d.PositionBehavior3d;
+import engine.Behavior;
+import static engine.Layer.PREUPDATE;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import util.LongMap;
+import static util.math.MathUtils.floor;
+import util.math.Vec2d;
+import util.math.Vec3d;
+
+/**
+ * A uniform grid over every tracked behavior of a given class, indexed by the
+ * position of its root's PositionBehavior3d or PositionBehavior2d (with z = 0).
+ * The grid is refreshed at the start of each frame in PREUPDATE, and only
+ * behaviors whose position changed since the last refresh are moved between
+ * cells.
+ *
+ * @param <T> The type of behavior being indexed.
+ */
+public class SpatialIndex<T extends Behavior> extends AbstractCollection<T> {
+
+    public static <T extends Behavior> SpatialIndex<T> track(Class<T> c, double cellSize) {
+        return Behavior.track(c, new SpatialIndex(cellSize));
+    }
+
+    private static final int CELL_LIMIT = 1 << 20;
+
+    public final double cellSize;
+
+    private final LongMap<List<Entry<T>>> cells = new LongMap();
+    private final Map<T, Entry<T>> entries = new HashMap();
+    private final List<Entry<T>> entryList = new ArrayList();
+    private Behavior updater;
+
+    public SpatialIndex(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    @Override
+    public boolean add(T t) {
+        if (entries.containsKey(t)) {
+            return false;
+        }
+        if (updater == null) {
+            updater = PREUPDATE.onStep(this::update);
+        }
+        Entry<T> e = new Entry(t);
+        e.listIndex = entryList.size();
+        entryList.add(e);
+        entries.put(t, e);
+        e.refresh();
+        insert(e);
+        return true;
+    }
+
+    private List<Entry<T>> cell(int x, int y, int z) {
+        return cells.get(cellKey(x, y, z));
+    }
+
+    // Clamped to the 21 bits each coordinate gets in a cell key, so far away positions share the edge cells instead of overflowing
+    private int cellCoord(double d) {
+        return floor(Math.max(-CELL_LIMIT, Math.min(CELL_LIMIT - 1, d / cellSize)));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return entries.containsKey(o);
+    }
+
+    // Visits the cells in a range of cell coordinates, or scans the occupied cells instead when there are fewer of them
+    private void forEachCell(int x0, int y0, int z0, int x1, int y1, int z1, Consumer<List<Entry<T>>> action) {
+        if ((x1 - x0 + 1.) * (y1 - y0 + 1.) * (z1 - z0 + 1.) > cells.size()) {
+            for (List<Entry<T>> cell : cells.values()) {
+                Entry<T> e = cell.get(0);
+                if (e.cx >= x0 && e.cx <= x1 && e.cy >= y0 && e.cy <= y1 && e.cz >= z0 && e.cz <= z1) {
+                    action.accept(cell);
+                }
+            }
+            return;
+        }
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    List<Entry<T>> cell = cell(x, y, z);
+                    if (cell != null) {
+                        action.accept(cell);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns all indexed behaviors whose position lies inside the given
+     * axis-aligned box.
+     *
+     * @param min The lower corner of the box.
+     * @param max The upper corner of the box.
+     * @return The behaviors inside the box.
+     */
+    public List<T> inBox(Vec3d min, Vec3d max) {
+        List<T> r = new ArrayList();
+        forEachCell(cellCoord(min.x), cellCoord(min.y), cellCoord(min.z), cellCoord(max.x), cellCoord(max.y), cellCoord(max.z), cell -> {
+            for (Entry<T> e : cell) {
+                if (e.x >= min.x && e.x <= max.x && e.y >= min.y && e.y <= max.y && e.z >= min.z && e.z <= max.z) {
+                    r.add(e.behavior);
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Returns all indexed behaviors within range of the apex whose direction
+     * from the apex is within the given angle of the cone's axis.
+     *
+     * @param apex The tip of the cone.
+     * @param direction The axis of the cone.
+     * @param angle The half-angle of the cone, in radians.
+     * @param range The maximum distance from the apex.
+     * @return The behaviors inside the cone.
+     */
+    public List<T> inCone(Vec3d apex, Vec3d direction, double angle, double range) {
+        Vec3d axis = direction.normalize();
+        double cos = Math.cos(angle);
+        List<T> r = new ArrayList();
+        for (T t : inRadius(apex, range)) {
+            Entry<T> e = entries.get(t);
+            double dx = e.x - apex.x, dy = e.y - apex.y, dz = e.z - apex.z;
+            double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (length == 0 || (dx * axis.x + dy * axis.y + dz * axis.z) >= cos * length) {
+                r.add(t);
+            }
+        }
+        return r;
+    }
+
+    public List<T> inRadius(Vec2d center, double radius) {
+        return inRadius(new Vec3d(center.x, center.y, 0), radius);
+    }
+
+    /**
+     * Returns all indexed behaviors within the given distance of a point.
+     *
+     * @param center The center of the sphere.
+     * @param radius The radius of the sphere.
+     * @return The behaviors inside the sphere.
+     */
+    public List<T> inRadius(Vec3d center, double radius) {
+        List<T> r = new ArrayList();
+        double radiusSquared = radius * radius;
+        forEachCell(cellCoord(center.x - radius), cellCoord(center.y - radius), cellCoord(center.z - radius),
+                cellCoord(center.x + radius), cellCoord(center.y + radius), cellCoord(center.z + radius), cell -> {
+            for (Entry<T> e : cell) {
+                if (e.distanceSquared(center) <= radiusSquared) {
+                    r.add(e.behavior);
+                }
+            }
+        });
+        return r;
+    }
+
+    private void insert(Entry<T> e) {
+        e.cx = cellCoord(e.x);
+        e.cy = cellCoord(e.y);
+        e.cz = cellCoord(e.z);
+        long key = cellKey(e.cx, e.cy, e.cz);
+        List<Entry<T>> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList();
+            cells.put(key, cell);
+        }
+        e.cellIndex = cell.size();
+        cell.add(e);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return Collections.unmodifiableSet(entries.keySet()).iterator();
+    }
+
+    /**
+     * Returns the k indexed behaviors closest to a point, nearest first. The
+     * grid is searched in shells of cells around the point until no unvisited
+     * cell can contain anything closer than the current kth best.
+     *
+     * @param point The point to search around.
+     * @param k The maximum number of behaviors to return.
+     * @return The nearest behaviors.
+     */
+    public List<T> nearest(Vec3d point, int k) {
+        PriorityQueue<Entry<T>> best = new PriorityQueue<>(Math.max(1, k),
+                (e1, e2) -> Double.compare(e2.distanceSquared(point), e1.distanceSquared(point)));
+        if (k > 0) {
+            int cx = cellCoord(point.x), cy = cellCoord(point.y), cz = cellCoord(point.z);
+            for (int ring = 0;; ring++) {
+                long ringCells = (long) (2 * ring + 1) * (2 * ring + 1) * (2 * ring + 1);
+                if (ringCells > cells.size() + entries.size()) {
+                    // The shell has grown larger than the index itself, so just scan everything
+                    best.clear();
+                    for (Entry<T> e : entryList) {
+                        offer(best, e, k);
+                    }
+                    break;
+                }
+                // Cells past the clamped coordinates don't exist, and their keys would wrap around onto real cells
+                for (int x = Math.max(cx - ring, -CELL_LIMIT); x <= Math.min(cx + ring, CELL_LIMIT - 1); x++) {
+                    for (int y = Math.max(cy - ring, -CELL_LIMIT); y <= Math.min(cy + ring, CELL_LIMIT - 1); y++) {
+                        boolean xyEdge = Math.abs(x - cx) == ring || Math.abs(y - cy) == ring;
+                        for (int z = cz - ring; z <= cz + ring; z += (xyEdge || ring == 0) ? 1 : 2 * ring) {
+                            if (z < -CELL_LIMIT || z >= CELL_LIMIT) {
+                                continue;
+                            }
+                            List<Entry<T>> cell = cell(x, y, z);
+                            if (cell != null) {
+                                for (Entry<T> e : cell) {
+                                    offer(best, e, k);
+                                }
+                            }
+                        }
+                    }
+                }
+                double reach = ring * cellSize;
+                if (best.size() == Math.min(k, entries.size()) && (best.isEmpty() || best.peek().distanceSquared(point) <= reach * reach)) {
+                    break;
+                }
+            }
+        }
+        List<T> r = new ArrayList();
+        while (!best.isEmpty()) {
+            r.add(best.poll().behavior);
+        }
+        Collections.reverse(r);
+        return r;
+    }
+
+    private static <T extends Behavior> void offer(PriorityQueue<Entry<T>> best, Entry<T> e, int k) {
+        best.add(e);
+        if (best.size() > k) {
+            best.poll();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Entry<T> e = entries.remove(o);
+        if (e == null) {
+            return false;
+        }
+        unlink(e);
+        Entry<T> last = entryList.remove(entryList.size() - 1);
+        if (last != e) {
+            entryList.set(e.listIndex, last);
+            last.listIndex = e.listIndex;
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    private void unlink(Entry<T> e) {
+        long key = cellKey(e.cx, e.cy, e.cz);
+        List<Entry<T>> cell = cells.get(key);
+        Entry<T> last = cell.remove(cell.size() - 1);
+        if (last != e) {
+            cell.set(e.cellIndex, last);
+            last.cellIndex = e.cellIndex;
+        }
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    /**
+     * Moves every behavior whose position changed since the last update into
+     * its new cell. This runs automatically each frame, but can be called
+     * manually after moving behaviors mid-frame.
+     */
+    public void update() {
+        for (int i = 0; i < entryList.size(); i++) {
+            Entry<T> e = entryList.get(i);
+            if (e.refresh() && (cellCoord(e.x) != e.cx || cellCoord(e.y) != e.cy || cellCoord(e.z) != e.cz)) {
+                unlink(e);
+                insert(e);
+            }
+        }
+    }
+
+    private static class Entry<T extends Behavior> {
+
+        private final T behavior;
+        private final PositionBehavior3d position3d;
+        private final PositionBehavior2d position2d;
+        private Object lastPosition;
+        private double x, y, z;
+        private int cx, cy, cz;
+        private int cellIndex, listIndex;
+
+        private Entry(T behavior) {
+            this.behavior = behavior;
+            position3d = behavior.getOrNull(PositionBehavior3d.class);
+            position2d = position3d == null ? behavior.getOrNull(PositionBehavior2d.class) : null;
+            if (position3d == null && position2d == null) {
+                throw new RuntimeException("Spatially indexed behaviors need a position: " + behavior.getClass().getSimpleName());
+            }
+        }
+
+        private double distanceSquared(Vec3d v) {
+            return (x - v.x) * (x - v.x) + (y - v.y) * (y - v.y) + (z - v.z) * (z - v.z);
+        }
+
+        // Positions are immutable, so a position only changed if it was reassigned
+        private boolean refresh() {
+            if (position3d != null) {
+                Vec3d p = position3d.position;
+                if (p == lastPosition) {
+                    return false;
+                }
+                lastPosition = p;
+                x = p.x;
+                y = p.y;
+                z = p.z;
+            } else {
+                Vec2d p = position2d.position;
+                if (p == lastPosition) {
+                    return false;
+                }
+                lastPosition = p;
+                x = p.x;
+                y = p.y;
+                z = 0;
+            }
+            return true;
+        }
+    }
+}
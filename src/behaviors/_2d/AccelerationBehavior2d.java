@@ -2,14 +2,21 @@ package behaviors._2d;
 
 import engine.Behavior;
 import static engine.Core.dt;
+import engine.ParallelSafe;
 import util.math.Vec2d;
 
+@ParallelSafe(writes = {VelocityBehavior2d.class, PositionBehavior2d.class})
 public class AccelerationBehavior2d extends Behavior {
 
     public final VelocityBehavior2d velocity = require(VelocityBehavior2d.class);
 
     public Vec2d acceleration = new Vec2d(0, 0);
 
+    @Override
+    public void resetInner() {
+        acceleration = new Vec2d(0, 0);
+    }
+
     @Override
     public void step() {
         velocity.velocity = velocity.velocity.add(acceleration.mul(dt()));
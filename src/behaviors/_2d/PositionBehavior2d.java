@@ -6,4 +6,9 @@ import util.math.Vec2d;
 public class PositionBehavior2d extends Behavior {
 
     public Vec2d position = new Vec2d(0, 0);
+
+    @Override
+    public void resetInner() {
+        position = new Vec2d(0, 0);
+    }
 }
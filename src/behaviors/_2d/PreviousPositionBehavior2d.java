@@ -3,8 +3,10 @@ package behaviors._2d;
 import engine.Behavior;
 import engine.Layer;
 import static engine.Layer.POSTUPDATE;
+import engine.ParallelSafe;
 import util.math.Vec2d;
 
+@ParallelSafe(reads = PositionBehavior2d.class)
 public class PreviousPositionBehavior2d extends Behavior {
 
     public final PositionBehavior2d position = require(PositionBehavior2d.class);
@@ -21,6 +23,11 @@ public class PreviousPositionBehavior2d extends Behavior {
         return POSTUPDATE;
     }
 
+    @Override
+    public void resetInner() {
+        prevPos = null;
+    }
+
     @Override
     public void step() {
         prevPos = position.position;
@@ -19,6 +19,15 @@ public class ModelBehavior extends Behavior {
     public Color color = Color.WHITE;
     public boolean useOriginalSize;
 
+    @Override
+    public void resetInner() {
+        model = null;
+        rotation = 0;
+        scale = 1 / 16.;
+        color = Color.WHITE;
+        useOriginalSize = false;
+    }
+
     @Override
     public Layer layer() {
         return RENDER3D;
@@ -6,4 +6,21 @@ import util.math.Vec3d;
 public class PositionBehavior3d extends Behavior {
 
     public Vec3d position = new Vec3d(0, 0, 0);
+
+    @Override
+    public void resetInner() {
+        position = new Vec3d(0, 0, 0);
+    }
+
+    /**
+     * Moves the behavior, marking it changed if the position is different.
+     *
+     * @param position The new position.
+     */
+    public void setPosition(Vec3d position) {
+        if (!position.equals(this.position)) {
+            this.position = position;
+            markChanged();
+        }
+    }
 }
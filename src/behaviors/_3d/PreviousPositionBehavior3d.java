@@ -3,8 +3,10 @@ package behaviors._3d;
 import engine.Behavior;
 import engine.Layer;
 import static engine.Layer.POSTUPDATE;
+import engine.ParallelSafe;
 import util.math.Vec3d;
 
+@ParallelSafe(reads = PositionBehavior3d.class)
 public class PreviousPositionBehavior3d extends Behavior {
 
     public final PositionBehavior3d position = require(PositionBehavior3d.class);
@@ -21,6 +23,11 @@ public class PreviousPositionBehavior3d extends Behavior {
         return POSTUPDATE;
     }
 
+    @Override
+    public void resetInner() {
+        prevPos = null;
+    }
+
     @Override
     public void step() {
         prevPos = position.position;
@@ -2,16 +2,23 @@ package behaviors._3d;
 
 import engine.Behavior;
 import static engine.Core.dt;
+import engine.ParallelSafe;
 import util.math.Vec3d;
 
+@ParallelSafe(writes = PositionBehavior3d.class)
 public class VelocityBehavior3d extends Behavior {
 
     public final PositionBehavior3d position = require(PositionBehavior3d.class);
 
     public Vec3d velocity = new Vec3d(0, 0, 0);
 
+    @Override
+    public void resetInner() {
+        velocity = new Vec3d(0, 0, 0);
+    }
+
     @Override
     public void step() {
-        position.position = position.position.add(velocity.mul(dt()));
+        position.setPosition(position.position.add(velocity.mul(dt())));
     }
 }
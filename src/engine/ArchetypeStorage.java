@@ -0,0 +1,111 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+public class ArchetypeStorage extends BehaviorStorage {
+
+    /*
+    Behaviors are grouped by archetype (the set of subbehavior classes of their
+    root), and within each archetype by their own class. Each group is packed
+    into a dense column, and stepping walks the columns in order.
+     */
+    private final Map<Set<Class<? extends Behavior>>, Map<Class<? extends Behavior>, Column>> archetypes = new HashMap();
+    private final List<Column> columns = new ArrayList();
+    private int size;
+
+    private Column columnFor(Behavior b) {
+        Set<Class<? extends Behavior>> archetype = b.getRoot().getSubBehaviors();
+        Map<Class<? extends Behavior>, Column> table = archetypes.get(archetype);
+        if (table == null) {
+            table = new HashMap();
+            archetypes.put(new HashSet(archetype), table);
+        }
+        Column c = table.get(b.getClass());
+        if (c == null) {
+            c = new Column();
+            table.put(b.getClass(), c);
+            columns.add(c);
+        }
+        return c;
+    }
+
+    @Override
+    Iterator<Behavior> activeIterator() {
+        return new Iterator<Behavior>() {
+            int column = 0;
+            int pos = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (column < columns.size() && pos >= columns.get(column).size) {
+                    column++;
+                    pos = 0;
+                }
+                return column < columns.size();
+            }
+
+            @Override
+            public Behavior next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return columns.get(column).items[pos++];
+            }
+        };
+    }
+
+    @Override
+    int activeSize() {
+        return size;
+    }
+
+    @Override
+    void stepStored() {
+        for (int i = 0; i < columns.size(); i++) {
+            Column c = columns.get(i);
+            for (int j = 0; j < c.size; j++) {
+                c.items[j].step();
+            }
+        }
+    }
+
+    @Override
+    void store(Behavior b) {
+        Column c = columnFor(b);
+        if (c.size == c.items.length) {
+            c.items = Arrays.copyOf(c.items, Math.max(16, 2 * c.size));
+        }
+        c.items[c.size] = b;
+        b.storageIndex = c.size;
+        b.archetypeColumn = c;
+        c.size++;
+        size++;
+    }
+
+    @Override
+    void unstore(Behavior b) {
+        Column c = b.archetypeColumn;
+        c.size--;
+        Behavior last = c.items[c.size];
+        c.items[b.storageIndex] = last;
+        last.storageIndex = b.storageIndex;
+        c.items[c.size] = null;
+        b.storageIndex = -1;
+        b.archetypeColumn = null;
+        size--;
+    }
+
+    static class Column {
+
+        private Behavior[] items = {};
+        private int size;
+    }
+}
@@ -1,23 +1,64 @@
 package engine;
 
-import static engine.Core.MAIN_THREAD;
-import static engine.Core.onMainThread;
 import static engine.Layer.UPDATE;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public abstract class Behavior {
 
-    private static final Map<Class<? extends Behavior>, Collection<Behavior>> TRACKED_BEHAVIORS = new HashMap();
+    private static final Map<Class<? extends Behavior>, Supplier<? extends Behavior>> FACTORIES = new ConcurrentHashMap();
+    private static final ThreadLocal<Behavior> CURRENT_ROOT = new ThreadLocal();
+    private static final ClassValue<Boolean> STEPS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> c) {
+            try {
+                return c.getMethod("step").getDeclaringClass() != Behavior.class;
+            } catch (NoSuchMethodException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    };
 
-    private static Behavior currentRoot;
     private final Behavior root;
+    // Only set on the root, which is constructed in the world current at the time
+    World world;
     private final Map<Class<? extends Behavior>, Behavior> subBehaviors;
 
+    // Bookkeeping for the layer storage this behavior is stepped in
+    BehaviorStorage storage;
+    // The storage this behavior is in once pending changes are applied, which contains and iteration follow
+    BehaviorStorage appliedStorage;
+    int storageIndex = -1;
+    ArchetypeStorage.Column archetypeColumn;
+
+    // Sleeping behaviors stay in their layer's storage but are not stepped
+    boolean sleeping;
+    int sleeperIndex = -1;
+    double wakeTime = Double.NaN;
+    int timerSlot = -1;
+    int timerIndex;
+
+    // The pool this root behavior returns to when destroyed, if any
+    BehaviorPool pool;
+    boolean inPool;
+
     public Behavior() {
+        Behavior currentRoot = CURRENT_ROOT.get();
         if (currentRoot == null) {
             // This is a root behavior
             root = this;
-            subBehaviors = new HashMap();
+            world = World.current();
+            // Insertion order, so behaviors are stored and stepped in the same order every run
+            subBehaviors = new LinkedHashMap();
             subBehaviors.put(getClass(), this);
         } else {
             // This is not a root behavior
@@ -31,8 +72,8 @@ public abstract class Behavior {
 
     // Utility functions
     public final Behavior create() {
-        if (Thread.currentThread() != MAIN_THREAD) {
-            onMainThread(() -> create());
+        if (Thread.currentThread() != root.world.thread()) {
+            root.world.onMainThread(() -> create());
             return this;
         }
         if (!isRoot()) {
@@ -45,16 +86,52 @@ public abstract class Behavior {
     }
 
     private void createActual() {
-        if (TRACKED_BEHAVIORS.containsKey(getClass())) {
-            TRACKED_BEHAVIORS.get(getClass()).add(this);
+        List<Collection<Behavior>> tracked = root.world.tracked(getClass());
+        if (tracked != null) {
+            for (int i = 0; i < tracked.size(); i++) {
+                tracked.get(i).add(this);
+            }
         }
-        layer().behaviors.add(this);
+        root.world.behaviors(layer()).add(this);
         createInner();
     }
 
+    /**
+     * Creates many root behaviors at once. Off the main thread this queues a
+     * single task rather than one per behavior, and on the main thread each
+     * layer's storage is grown once for the whole batch instead of once per
+     * behavior.
+     *
+     * @param behaviors The root behaviors to create.
+     */
+    public static void createAll(Collection<? extends Behavior> behaviors) {
+        if (behaviors.isEmpty()) {
+            return;
+        }
+        World world = worldOf(behaviors);
+        if (Thread.currentThread() != world.thread()) {
+            List<Behavior> batch = new ArrayList(behaviors);
+            world.onMainThread(() -> createAll(batch));
+            return;
+        }
+        List<Behavior> all = allSubBehaviors(behaviors, "Can only create root behaviors");
+        Map<Collection<Behavior>, Integer> layerCounts = new IdentityHashMap();
+        for (int i = 0; i < all.size(); i++) {
+            layerCounts.merge(world.behaviors(all.get(i).layer()), 1, Integer::sum);
+        }
+        for (Map.Entry<Collection<Behavior>, Integer> e : layerCounts.entrySet()) {
+            if (e.getKey() instanceof BehaviorStorage) {
+                ((BehaviorStorage) e.getKey()).ensureCapacity(e.getValue());
+            }
+        }
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).createActual();
+        }
+    }
+
     public final void destroy() {
-        if (Thread.currentThread() != MAIN_THREAD) {
-            onMainThread(() -> destroy());
+        if (Thread.currentThread() != root.world.thread()) {
+            root.world.onMainThread(() -> destroy());
             return;
         }
         if (!isRoot()) {
@@ -63,16 +140,75 @@ public abstract class Behavior {
         for (Behavior b : subBehaviors.values()) {
             b.destroyActual();
         }
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Destroys many root behaviors at once, queueing a single task when called
+     * off the main thread.
+     *
+     * @param behaviors The root behaviors to destroy.
+     */
+    public static void destroyAll(Collection<? extends Behavior> behaviors) {
+        if (behaviors.isEmpty()) {
+            return;
+        }
+        World world = worldOf(behaviors);
+        if (Thread.currentThread() != world.thread()) {
+            List<Behavior> batch = new ArrayList(behaviors);
+            world.onMainThread(() -> destroyAll(batch));
+            return;
+        }
+        List<Behavior> all = allSubBehaviors(behaviors, "Can only destroy root behaviors");
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).destroyActual();
+        }
+        for (Behavior b : behaviors) {
+            if (b.pool != null) {
+                b.pool.release(b);
+            }
+        }
     }
 
     private void destroyActual() {
-        if (TRACKED_BEHAVIORS.containsKey(getClass())) {
-            TRACKED_BEHAVIORS.get(getClass()).remove(this);
+        List<Collection<Behavior>> tracked = root.world.tracked(getClass());
+        if (tracked != null) {
+            for (int i = 0; i < tracked.size(); i++) {
+                tracked.get(i).remove(this);
+            }
         }
-        layer().behaviors.remove(this);
+        root.world.behaviors(layer()).remove(this);
+        sleeping = false;
+        wakeTime = Double.NaN;
+        root.world.timers.cancel(this);
         destroyInner();
     }
 
+    private static List<Behavior> allSubBehaviors(Collection<? extends Behavior> behaviors, String notRootMessage) {
+        List<Behavior> all = new ArrayList(2 * behaviors.size());
+        for (Behavior b : behaviors) {
+            if (!b.isRoot()) {
+                throw new RuntimeException(notRootMessage);
+            }
+            all.addAll(b.subBehaviors.values());
+        }
+        return all;
+    }
+
+    private static World worldOf(Collection<? extends Behavior> behaviors) {
+        World world = null;
+        for (Behavior b : behaviors) {
+            if (world == null) {
+                world = b.root.world;
+            } else if (b.root.world != world) {
+                throw new RuntimeException("Can only batch behaviors from a single world");
+            }
+        }
+        return world;
+    }
+
     public final <T extends Behavior> T get(Class<T> c) {
         T t = getOrNull(c);
         if (t != null) {
@@ -90,6 +226,10 @@ public abstract class Behavior {
         return root;
     }
 
+    public final World getWorld() {
+        return root.world;
+    }
+
     public final Set<Class<? extends Behavior>> getSubBehaviors() {
         if (!isRoot()) {
             throw new RuntimeException("Can only get subbehaviors of root behaviors");
@@ -101,6 +241,26 @@ public abstract class Behavior {
         return getOrNull(c) != null;
     }
 
+    /**
+     * Tells every ChangeListener tracking this behavior's class that its
+     * state changed. Setters call this so trackers can find the changed
+     * behaviors without comparing every one of them each frame.
+     */
+    public final void markChanged() {
+        List<Collection<Behavior>> tracked = root.world.tracked(getClass());
+        if (tracked != null) {
+            for (int i = 0; i < tracked.size(); i++) {
+                if (tracked.get(i) instanceof ChangeListener) {
+                    ((ChangeListener) tracked.get(i)).changed(this);
+                }
+            }
+        }
+    }
+
+    public final boolean isSleeping() {
+        return sleeping;
+    }
+
     public final boolean isRoot() {
         return this == root;
     }
@@ -110,26 +270,165 @@ public abstract class Behavior {
             return root.require(c);
         }
         // Check if the behavior already exists
+        T existing = getOrNull(c);
+        if (existing != null) {
+            return existing;
+        }
+        return construct(factory(c));
+    }
+
+    /**
+     * Like require(c), but builds the behavior with the given supplier if it
+     * doesn't exist yet, instead of the class's generated factory. The
+     * supplier must construct a behavior of class c.
+     *
+     * @param <T> The type of behavior.
+     * @param c The class of behavior.
+     * @param factory The supplier to construct the behavior with.
+     * @return The existing or newly constructed behavior.
+     */
+    public final <T extends Behavior> T require(Class<T> c, Supplier<T> factory) {
+        if (!isRoot()) {
+            return root.require(c, factory);
+        }
+        T existing = getOrNull(c);
+        if (existing != null) {
+            return existing;
+        }
+        return construct(factory);
+    }
+
+    // Instantiates a new subbehavior of this root
+    private <T extends Behavior> T construct(Supplier<T> factory) {
+        Behavior prevRoot = CURRENT_ROOT.get();
+        CURRENT_ROOT.set(this);
         try {
-            return get(c);
-        } catch (RuntimeException e) {
+            return factory.get();
+        } finally {
+            CURRENT_ROOT.set(prevRoot);
+        }
+    }
+
+    /**
+     * Returns a supplier that constructs new root behaviors of the given
+     * class, along with everything they require. The supplier is built once
+     * per class from the class's empty public constructor, so constructing
+     * behaviors through it does not use reflection, and it is safe to call
+     * from any thread.
+     *
+     * @param <T> The type of behavior.
+     * @param c The class of behavior.
+     * @return A supplier of new behaviors of that class.
+     */
+    public static <T extends Behavior> Supplier<T> factory(Class<T> c) {
+        Supplier<? extends Behavior> factory = FACTORIES.get(c);
+        if (factory == null) {
+            factory = createFactory(c);
+            FACTORIES.putIfAbsent(c, factory);
         }
-        // Instantiate a new behavior
+        return (Supplier<T>) factory;
+    }
+
+    private static <T extends Behavior> Constructor<T> constructor(Class<T> c) {
         try {
-            currentRoot = this;
-            T r = c.newInstance();
-            currentRoot = null;
-            return r;
-        } catch (InstantiationException | IllegalAccessException ex) {
+            return c.getConstructor();
+        } catch (NoSuchMethodException ex) {
             throw new RuntimeException("Behavior does not have an empty public constructor: " + c.getSimpleName());
         }
     }
 
-    public static <T extends Behavior> Collection<T> track(Class<T> c) {
-        if (!TRACKED_BEHAVIORS.containsKey(c)) {
-            TRACKED_BEHAVIORS.put(c, new HashSet());
+    private static <T extends Behavior> Supplier<T> createFactory(Class<T> c) {
+        Constructor<T> constructor = constructor(c);
+        CallSite site;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflectConstructor(constructor);
+            site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), handle, MethodType.methodType(c));
+        } catch (ReflectiveOperationException | LambdaConversionException ex) {
+            // The class isn't accessible to a generated lambda, so fall back to reflection
+            return reflectionFactory(c, constructor);
+        }
+        try {
+            return (Supplier<T>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
         }
-        return (Collection) TRACKED_BEHAVIORS.get(c);
+    }
+
+    private static <T extends Behavior> Supplier<T> reflectionFactory(Class<T> c, Constructor<T> constructor) {
+        return () -> {
+            try {
+                return constructor.newInstance();
+            } catch (InvocationTargetException ex) {
+                throw new RuntimeException(ex.getCause());
+            } catch (ReflectiveOperationException ex) {
+                throw new RuntimeException("Behavior does not have an empty public constructor: " + c.getSimpleName());
+            }
+        };
+    }
+
+    /**
+     * Stops stepping this behavior until wake() is called. A sleeping behavior
+     * is still part of its layer and is still tracked, but costs nothing per
+     * frame. Like creating and destroying, this takes effect the next time
+     * the behavior's layer is stepped.
+     */
+    public final void sleep() {
+        if (Thread.currentThread() != root.world.thread()) {
+            root.world.onMainThread(() -> sleep());
+            return;
+        }
+        sleeping = true;
+        wakeTime = Double.NaN;
+        root.world.timers.cancel(this);
+        if (storage != null) {
+            storage.changed(this);
+        }
+    }
+
+    boolean stepsWhenAwake() {
+        return STEPS.get(getClass());
+    }
+
+    /**
+     * Starts stepping this behavior again, and cancels any pending wakeAfter.
+     */
+    public final void wake() {
+        if (Thread.currentThread() != root.world.thread()) {
+            root.world.onMainThread(() -> wake());
+            return;
+        }
+        sleeping = false;
+        wakeTime = Double.NaN;
+        root.world.timers.cancel(this);
+        if (storage != null) {
+            storage.changed(this);
+        }
+    }
+
+    /**
+     * Puts this behavior to sleep and wakes it once the given amount of world
+     * time has passed.
+     *
+     * @param seconds The time to sleep for, in seconds.
+     */
+    public final void wakeAfter(double seconds) {
+        if (Thread.currentThread() != root.world.thread()) {
+            root.world.onMainThread(() -> wakeAfter(seconds));
+            return;
+        }
+        sleep();
+        wakeTime = root.world.time() + seconds;
+        root.world.timers.schedule(this);
+    }
+
+    public static <T extends Behavior> Collection<T> track(Class<T> c) {
+        return World.current().track(c);
+    }
+
+    public static <T extends Behavior, C extends Collection<T>> C track(Class<T> c, C collection) {
+        return World.current().track(c, collection);
     }
 
     // Overridable functions
@@ -139,6 +438,9 @@ public abstract class Behavior {
     public void destroyInner() {
     }
 
+    public void resetInner() {
+    }
+
     public Layer layer() {
         return UPDATE;
     }
@@ -0,0 +1,100 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class BehaviorList extends BehaviorStorage {
+
+    /*
+    Behaviors are kept in a single array in the order they were created.
+    Removing a behavior leaves a hole that stepping skips over. Once holes
+    make up a quarter of the array, compact() closes them up in one pass,
+    keeping the order deterministic, so a steady trickle of removals (like
+    behaviors going to sleep) doesn't cost a full pass every frame.
+     */
+    private Behavior[] items = {};
+    private int size;
+    private int holes;
+
+    @Override
+    void compact() {
+        if (4 * holes <= size) {
+            return;
+        }
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            Behavior b = items[i];
+            if (b != null) {
+                items[j] = b;
+                b.storageIndex = j;
+                j++;
+            }
+        }
+        Arrays.fill(items, j, size, null);
+        size = j;
+        holes = 0;
+    }
+
+    @Override
+    Iterator<Behavior> activeIterator() {
+        return new Iterator<Behavior>() {
+            int pos = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (pos < size && items[pos] == null) {
+                    pos++;
+                }
+                return pos < size;
+            }
+
+            @Override
+            public Behavior next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return items[pos++];
+            }
+        };
+    }
+
+    @Override
+    void reserve(int count) {
+        if (size + count > items.length) {
+            items = Arrays.copyOf(items, Math.max(size + count, 2 * size));
+        }
+    }
+
+    @Override
+    int activeSize() {
+        return size - holes;
+    }
+
+    @Override
+    void stepStored() {
+        for (int i = 0; i < size; i++) {
+            Behavior b = items[i];
+            if (b != null) {
+                b.step();
+            }
+        }
+    }
+
+    @Override
+    void store(Behavior b) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, Math.max(16, 2 * size));
+        }
+        items[size] = b;
+        b.storageIndex = size;
+        size++;
+    }
+
+    @Override
+    void unstore(Behavior b) {
+        items[b.storageIndex] = null;
+        b.storageIndex = -1;
+        holes++;
+    }
+}
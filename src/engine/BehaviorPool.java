@@ -0,0 +1,53 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A pool of root behaviors of a single composition. Behaviors acquired from a
+ * pool are released back to it when destroyed, and are handed out again after
+ * calling resetInner() on each of their subbehaviors, so that spawning them
+ * does not rebuild the subbehavior graph.
+ *
+ * @param <T> The type of root behavior being pooled.
+ */
+public class BehaviorPool<T extends Behavior> {
+
+    private final Supplier<T> factory;
+    private final List<T> free = new ArrayList();
+
+    public BehaviorPool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    public synchronized T acquire() {
+        T t;
+        if (free.isEmpty()) {
+            t = factory.get();
+            if (!t.isRoot()) {
+                throw new RuntimeException("Can only pool root behaviors");
+            }
+            t.pool = this;
+        } else {
+            t = free.remove(free.size() - 1);
+            t.inPool = false;
+            t.world = World.current();
+            for (Class<? extends Behavior> c : t.getSubBehaviors()) {
+                t.get(c).resetInner();
+            }
+        }
+        return t;
+    }
+
+    public synchronized int available() {
+        return free.size();
+    }
+
+    synchronized void release(Behavior b) {
+        if (!b.inPool) {
+            b.inPool = true;
+            free.add((T) b);
+        }
+    }
+}
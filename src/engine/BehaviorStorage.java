@@ -0,0 +1,206 @@
+package engine;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public abstract class BehaviorStorage extends AbstractCollection<Behavior> {
+
+    /*
+    Adds and removes are buffered here and applied at the start of the next
+    stepAll, so the stored behaviors never change while they are being
+    stepped. A behavior created during a step is not stepped until the next
+    frame, and a behavior destroyed during a step still gets its step this
+    frame. The buffer keeps its capacity, so a steady set of behaviors steps
+    without allocating.
+
+    Only awake behaviors whose class overrides step() are stored by the
+    subclass and stepped. The rest are kept in a separate array of sleepers,
+    so they still belong to the storage but cost nothing per frame. Sleeping
+    and waking go through the same buffer as adds and removes.
+
+    Like size and iteration, contains only counts applied changes, so a
+    behavior added this frame is not contained until the next stepAll, and a
+    behavior removed this frame still is. Use forEachCurrent to see pending
+    changes too.
+     */
+    private final ArrayList<Behavior> pending = new ArrayList();
+    private Behavior[] sleepers = {};
+    private int sleeperCount;
+
+    @Override
+    public boolean add(Behavior b) {
+        if (b.storage == this) {
+            return false;
+        }
+        b.storage = this;
+        pending.add(b);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Behavior> c) {
+        ensureCapacity(c.size());
+        return super.addAll(c);
+    }
+
+    void ensureCapacity(int count) {
+        pending.ensureCapacity(pending.size() + count);
+        reserve(count);
+    }
+
+    abstract Iterator<Behavior> activeIterator();
+
+    abstract int activeSize();
+
+    private void addSleeper(Behavior b) {
+        if (sleeperCount == sleepers.length) {
+            sleepers = Arrays.copyOf(sleepers, Math.max(16, 2 * sleeperCount));
+        }
+        sleepers[sleeperCount] = b;
+        b.sleeperIndex = sleeperCount;
+        sleeperCount++;
+    }
+
+    void applyPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        boolean removed = false;
+        for (int i = 0; i < pending.size(); i++) {
+            Behavior b = pending.get(i);
+            boolean member = b.storage == this;
+            boolean active = member && b.stepsWhenAwake() && !b.sleeping;
+            if (b.storageIndex >= 0 && !active) {
+                unstore(b);
+                removed = true;
+            } else if (b.sleeperIndex >= 0 && (!member || active)) {
+                removeSleeper(b);
+            }
+            if (active && b.storageIndex < 0) {
+                store(b);
+            } else if (member && !active && b.sleeperIndex < 0) {
+                addSleeper(b);
+            }
+            b.appliedStorage = b.storageIndex >= 0 || b.sleeperIndex >= 0 ? this : null;
+        }
+        pending.clear();
+        if (removed) {
+            compact();
+        }
+    }
+
+    void changed(Behavior b) {
+        pending.add(b);
+    }
+
+    void compact() {
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Behavior && ((Behavior) o).appliedStorage == this;
+    }
+
+    // Visits the behaviors in this storage as of now, counting changes that have not been applied yet
+    void forEachCurrent(Consumer<Behavior> action) {
+        for (Behavior b : this) {
+            if (b.storage == this) {
+                action.accept(b);
+            }
+        }
+        Set<Behavior> added = Collections.newSetFromMap(new IdentityHashMap());
+        for (int i = 0; i < pending.size(); i++) {
+            Behavior b = pending.get(i);
+            if (b.storage == this && b.storageIndex < 0 && b.sleeperIndex < 0 && added.add(b)) {
+                action.accept(b);
+            }
+        }
+    }
+
+    @Override
+    public final Iterator<Behavior> iterator() {
+        Iterator<Behavior> active = activeIterator();
+        return new Iterator<Behavior>() {
+            int sleeper = 0;
+
+            @Override
+            public boolean hasNext() {
+                return active.hasNext() || sleeper < sleeperCount;
+            }
+
+            @Override
+            public Behavior next() {
+                if (active.hasNext()) {
+                    return active.next();
+                }
+                if (sleeper >= sleeperCount) {
+                    throw new NoSuchElementException();
+                }
+                return sleepers[sleeper++];
+            }
+        };
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Behavior) || ((Behavior) o).storage != this) {
+            return false;
+        }
+        Behavior b = (Behavior) o;
+        b.storage = null;
+        pending.add(b);
+        return true;
+    }
+
+    private void removeSleeper(Behavior b) {
+        sleeperCount--;
+        Behavior last = sleepers[sleeperCount];
+        sleepers[b.sleeperIndex] = last;
+        last.sleeperIndex = b.sleeperIndex;
+        sleepers[sleeperCount] = null;
+        b.sleeperIndex = -1;
+    }
+
+    void reserve(int count) {
+    }
+
+    @Override
+    public final int size() {
+        return activeSize() + sleeperCount;
+    }
+
+    void stepAll() {
+        applyPending();
+        stepStored();
+    }
+
+    void stepAllProfiled() {
+        applyPending();
+        Class<?> lastClass = null;
+        Profiler.Metric metric = null;
+        for (Iterator<Behavior> it = activeIterator(); it.hasNext();) {
+            Behavior b = it.next();
+            if (b.getClass() != lastClass) {
+                lastClass = b.getClass();
+                metric = Profiler.metric(lastClass);
+            }
+            long start = System.nanoTime();
+            b.step();
+            metric.current += System.nanoTime() - start;
+        }
+    }
+
+    abstract void stepStored();
+
+    abstract void store(Behavior b);
+
+    abstract void unstore(Behavior b);
+}
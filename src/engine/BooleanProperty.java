@@ -0,0 +1,76 @@
+package engine;
+
+import java.util.Arrays;
+
+public class BooleanProperty {
+
+    private boolean value;
+    private Modifier[] modifiers = {};
+    private int size;
+
+    public BooleanProperty(boolean value) {
+        this.value = value;
+    }
+
+    public Modifier addModifier(BooleanUnaryOperator modFunction) {
+        return addModifier(0, modFunction);
+    }
+
+    public Modifier addModifier(double depth, BooleanUnaryOperator modFunction) {
+        Modifier m = new Modifier(depth, modFunction);
+        int i = size;
+        while (i > 0 && Double.compare(modifiers[i - 1].depth, depth) > 0) {
+            i--;
+        }
+        if (size == modifiers.length) {
+            modifiers = Arrays.copyOf(modifiers, Math.max(4, 2 * size));
+        }
+        System.arraycopy(modifiers, i, modifiers, i + 1, size - i);
+        modifiers[i] = m;
+        size++;
+        return m;
+    }
+
+    public boolean get() {
+        boolean returnVal = value;
+        for (int i = 0; i < size; i++) {
+            returnVal = modifiers[i].modFunction.applyAsBoolean(returnVal);
+        }
+        return returnVal;
+    }
+
+    public boolean getBaseValue() {
+        return value;
+    }
+
+    public void setBaseValue(boolean value) {
+        this.value = value;
+    }
+
+    public interface BooleanUnaryOperator {
+
+        public boolean applyAsBoolean(boolean operand);
+    }
+
+    public class Modifier {
+
+        private final double depth;
+        private final BooleanUnaryOperator modFunction;
+
+        private Modifier(double depth, BooleanUnaryOperator modFunction) {
+            this.depth = depth;
+            this.modFunction = modFunction;
+        }
+
+        public void remove() {
+            for (int i = 0; i < size; i++) {
+                if (modifiers[i] == this) {
+                    System.arraycopy(modifiers, i + 1, modifiers, i, size - i - 1);
+                    size--;
+                    modifiers[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
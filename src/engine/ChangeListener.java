@@ -0,0 +1,11 @@
+package engine;
+
+/**
+ * A tracked collection that wants to hear when a behavior it tracks says its
+ * state changed, through Behavior.markChanged. This may be called from the
+ * threads that step parallel layers.
+ */
+public interface ChangeListener {
+
+    void changed(Behavior b);
+}
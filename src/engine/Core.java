@@ -1,74 +1,101 @@
 package engine;
 
-import static engine.Layer.ALL_LAYERS;
 import graphics.Window;
 import graphics.opengl.Framebuffer;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.concurrent.locks.LockSupport;
 
 public abstract class Core {
 
     public static Thread MAIN_THREAD;
 
     private static long prevTime;
-    private static double dt;
-    private static final Collection<Runnable> TO_RUN = new LinkedList();
     private static boolean shouldClose;
 
-    private static Collection<Runnable> clearToRun() {
-        synchronized (TO_RUN) {
-            Collection<Runnable> r = new LinkedList<>(TO_RUN);
-            TO_RUN.clear();
-            return r;
+    private static double waitForNextFrame() {
+        long minFrameTime = (long) (Settings.MIN_FRAME_TIME * 1e9);
+        long time = System.nanoTime();
+        while (time - prevTime < minFrameTime) {
+            LockSupport.parkNanos(minFrameTime - (time - prevTime));
+            time = System.nanoTime();
         }
+        double frameTime = Math.min((time - prevTime) / 1e9, Settings.MAX_FRAME_TIME);
+        prevTime = time;
+        return frameTime;
     }
 
     public static double dt() {
-        return dt;
+        return World.current().dt();
+    }
+
+    public static double interpolation() {
+        return World.current().interpolation();
+    }
+
+    public static int lastDrainCount() {
+        return World.current().lastDrainCount();
+    }
+
+    public static double lastDrainMaxWait() {
+        return World.current().lastDrainMaxWait();
+    }
+
+    public static double lastDrainTime() {
+        return World.current().lastDrainTime();
+    }
+
+    public static long queuedTasks() {
+        return World.current().queuedTasks();
     }
 
     public static void init() {
         MAIN_THREAD = Thread.currentThread();
-        Window.initGLFW();
-        Input.init();
+        if (Settings.PLAY_REPLAY != null) {
+            Settings.HEADLESS = true;
+        }
+        Replay.init();
+        if (!Settings.HEADLESS) {
+            Window.initGLFW();
+            Input.init();
+        }
     }
 
     public static void onMainThread(Runnable toRun) {
-        if (toRun == null) {
-            throw new RuntimeException("toRun cannot be null");
-        }
-        if (Thread.currentThread() != MAIN_THREAD) {
-            synchronized (TO_RUN) {
-                TO_RUN.add(toRun);
-            }
-        } else {
-            toRun.run();
-        }
+        World.current().onMainThread(toRun);
     }
 
     public static void run() {
-        while (!shouldClose && !(Settings.CLOSE_ON_X && Window.window.shouldClose())) {
+        while (!shouldClose && (Settings.HEADLESS || !(Settings.CLOSE_ON_X && Window.window.shouldClose()))) {
+            if (Settings.ENABLE_PROFILER) {
+                Profiler.nextFrame();
+            }
             Input.nextFrame();
-            Window.window.nextFrame();
-            Framebuffer.clearWindow(Settings.BACKGROUND_COLOR);
-
-            long time = System.nanoTime();
-            dt = Math.min((time - prevTime) / 1e9, Settings.MAX_FRAME_TIME);
-            while (dt < Settings.MIN_FRAME_TIME) {
-                try {
-                    Thread.sleep(0, 100);
-                } catch (InterruptedException ex) {
-                    throw new RuntimeException(ex);
+            if (!Settings.HEADLESS) {
+                long swapStart = Settings.ENABLE_PROFILER ? System.nanoTime() : 0;
+                Window.window.nextFrame();
+                if (Settings.ENABLE_PROFILER) {
+                    Profiler.record("swapBuffers", System.nanoTime() - swapStart);
                 }
-                time = System.nanoTime();
-                dt = Math.min((time - prevTime) / 1e9, Settings.MAX_FRAME_TIME);
+                Framebuffer.clearWindow(Settings.BACKGROUND_COLOR);
             }
-            prevTime = time;
 
-            clearToRun().forEach(r -> r.run());
-            new LinkedList<>(ALL_LAYERS).forEach(Layer::stepAll);
+            double frameTime;
+            if (Replay.playing()) {
+                frameTime = Replay.playFrame();
+                if (frameTime < 0) {
+                    break;
+                }
+            } else {
+                frameTime = waitForNextFrame();
+            }
+            Replay.recordFrame(frameTime);
+            Input.processEvents();
+
+            World.defaultWorld().step(frameTime);
+        }
+        Replay.close();
+        if (!Settings.HEADLESS) {
+            Window.cleanupGLFW();
         }
-        Window.cleanupGLFW();
         System.exit(0);
     }
 
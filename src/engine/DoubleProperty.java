@@ -0,0 +1,77 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+public class DoubleProperty {
+
+    /*
+    Modifiers are kept in an array sorted by depth, with ties broken by the
+    order they were added, matching Queryable.Modifier. Querying just walks
+    the array, so get() never boxes or allocates.
+     */
+    private double value;
+    private Modifier[] modifiers = {};
+    private int size;
+
+    public DoubleProperty(double value) {
+        this.value = value;
+    }
+
+    public Modifier addModifier(DoubleUnaryOperator modFunction) {
+        return addModifier(0, modFunction);
+    }
+
+    public Modifier addModifier(double depth, DoubleUnaryOperator modFunction) {
+        Modifier m = new Modifier(depth, modFunction);
+        int i = size;
+        while (i > 0 && Double.compare(modifiers[i - 1].depth, depth) > 0) {
+            i--;
+        }
+        if (size == modifiers.length) {
+            modifiers = Arrays.copyOf(modifiers, Math.max(4, 2 * size));
+        }
+        System.arraycopy(modifiers, i, modifiers, i + 1, size - i);
+        modifiers[i] = m;
+        size++;
+        return m;
+    }
+
+    public double get() {
+        double returnVal = value;
+        for (int i = 0; i < size; i++) {
+            returnVal = modifiers[i].modFunction.applyAsDouble(returnVal);
+        }
+        return returnVal;
+    }
+
+    public double getBaseValue() {
+        return value;
+    }
+
+    public void setBaseValue(double value) {
+        this.value = value;
+    }
+
+    public class Modifier {
+
+        private final double depth;
+        private final DoubleUnaryOperator modFunction;
+
+        private Modifier(double depth, DoubleUnaryOperator modFunction) {
+            this.depth = depth;
+            this.modFunction = modFunction;
+        }
+
+        public void remove() {
+            for (int i = 0; i < size; i++) {
+                if (modifiers[i] == this) {
+                    System.arraycopy(modifiers, i + 1, modifiers, i, size - i - 1);
+                    size--;
+                    modifiers[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
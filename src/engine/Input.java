@@ -3,12 +3,15 @@ package engine;
 import graphics.Camera;
 import graphics.Camera.Camera2d;
 import graphics.Window;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_LAST;
+import static org.lwjgl.glfw.GLFW.GLFW_MOUSE_BUTTON_LAST;
 import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
 import util.math.Vec2d;
-import util.math.VectorN;
 
 public abstract class Input {
 
@@ -19,62 +22,174 @@ public abstract class Input {
     public static final int MOUSE_BUTTON_IN = 2;
     public static final int MOUSE_WHEEL_IN = 3;
 
-    static void init() {
-        Window.window.setCursorPosCallback((window, xpos, ypos) -> {
-            Vec2d nMouse = new Vec2d(xpos / Settings.WINDOW_WIDTH, 1 - ypos / Settings.WINDOW_HEIGHT);
-            if (!R_LISTENERS.isEmpty()) {
-                R_LISTENERS.forEach(ril -> ril.receiveGeneralInput(MOUSE_IN, nMouse, nMouse.sub(mouse), 0, false, false));
-            }
-            mouse = nMouse;
-        });
-        Window.window.setKeyCallback((window, key, scancode, action, mods) -> {
-            if (key >= 0) {
-                boolean nks = action != GLFW_RELEASE;
-                if (!R_LISTENERS.isEmpty()) {
-                    R_LISTENERS.forEach(ril -> ril.receiveGeneralInput(KEY_IN, null, null, key, nks, nks != keys.get(key)));
-                }
-                keys.set(key, action != GLFW_RELEASE);
-            }
-        });
-        Window.window.setMouseButtonCallback((window, button, action, mods) -> {
-            boolean nbs = action != GLFW_RELEASE;
-            if (!R_LISTENERS.isEmpty()) {
-                R_LISTENERS.forEach(ril -> ril.receiveGeneralInput(MOUSE_BUTTON_IN, mouse, null, button, nbs, nbs != buttons.get(button)));
-            }
-            buttons.set(button, action != GLFW_RELEASE);
-        });
-        Window.window.setScrollCallback((window, xoffset, yoffset) -> {
-            Vec2d nwo = new Vec2d(xoffset, yoffset);
-            if (!R_LISTENERS.isEmpty()) {
-                R_LISTENERS.forEach(ril -> ril.receiveGeneralInput(MOUSE_WHEEL_IN, nwo, nwo.sub(vecMouseWheel), 0, false, false));
+    /*
+    Callbacks only write the raw event into a preallocated buffer. The events
+    are applied to the polled state and sent to listeners once per frame in
+    processEvents, after the window has polled for them, and stay readable
+    through events() until the next frame starts. None of this allocates
+    unless more events arrive in one frame than the buffer has ever held.
+     */
+    private static Event[] buffer = newEvents(256, 0);
+    private static int eventCount;
+    private static final List<Event> EVENTS = new AbstractList<Event>() {
+        @Override
+        public Event get(int index) {
+            if (index < 0 || index >= eventCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + eventCount);
             }
-            vecMouseWheel = nwo;
-            mouseWheel = yoffset;
-        });
+            return buffer[index];
+        }
+
+        @Override
+        public int size() {
+            return eventCount;
+        }
+    };
+
+    static void init() {
+        Window.window.setCursorPosCallback((window, xpos, ypos)
+                -> cursorPos(xpos / Settings.WINDOW_WIDTH, 1 - ypos / Settings.WINDOW_HEIGHT));
+        Window.window.setKeyCallback((window, key, scancode, action, mods) -> key(key, action));
+        Window.window.setMouseButtonCallback((window, button, action, mods) -> mouseButton(button, action));
+        Window.window.setScrollCallback((window, xoffset, yoffset) -> scroll(xoffset, yoffset));
+    }
+
+    private static Event[] newEvents(int length, int from) {
+        Event[] events = from == 0 ? new Event[length] : Arrays.copyOf(buffer, length);
+        for (int i = from; i < length; i++) {
+            events[i] = new Event();
+        }
+        return events;
+    }
+
+    // Every input event goes through these, whether it comes from GLFW or a replay
+    static void cursorPos(double x, double y) {
+        Replay.recordCursorPos(x, y);
+        push(MOUSE_IN, 0, 0, x, y);
+    }
+
+    static void key(int key, int action) {
+        Replay.recordKey(key, action);
+        if (key >= 0) {
+            push(KEY_IN, key, action, 0, 0);
+        }
+    }
+
+    static void mouseButton(int button, int action) {
+        Replay.recordMouseButton(button, action);
+        push(MOUSE_BUTTON_IN, button, action, 0, 0);
     }
-    
-    public static void addListener(ReactiveInputListener ril){
+
+    static void scroll(double xoffset, double yoffset) {
+        Replay.recordScroll(xoffset, yoffset);
+        push(MOUSE_WHEEL_IN, 0, 0, xoffset, yoffset);
+    }
+
+    private static void push(int kind, int code, int action, double x, double y) {
+        if (eventCount == buffer.length) {
+            buffer = newEvents(2 * buffer.length, buffer.length);
+        }
+        Event e = buffer[eventCount++];
+        e.kind = kind;
+        e.code = code;
+        e.action = action;
+        e.x = x;
+        e.y = y;
+    }
+
+    public static void addListener(ReactiveInputListener ril) {
         R_LISTENERS.add(ril);
     }
 
+    /**
+     * Returns the input events received this frame, in the order they
+     * arrived. The events are reused once the frame ends, so they should not
+     * be kept.
+     *
+     * @return The events received this frame.
+     */
+    public static List<Event> events() {
+        return EVENTS;
+    }
+
     static void nextFrame() {
-        prevKeys = (BitSet) keys.clone();
-        prevMouse = mouse;
-        prevButtons = (BitSet) buttons.clone();
+        if (Settings.FIXED_TICK_RATE <= 0) {
+            nextTick();
+        }
+        eventCount = 0;
+    }
+
+    // Moves the state that edges, mouse deltas and the wheel are measured from up to now
+    // With fixed ticks, World calls this after each tick instead, so each edge is seen by exactly one tick
+    static void nextTick() {
+        prevKeys.clear();
+        prevKeys.or(keys);
+        prevButtons.clear();
+        prevButtons.or(buttons);
+        prevMouseX = mouseX;
+        prevMouseY = mouseY;
         mouseWheel = 0;
     }
 
-    private static BitSet keys = new BitSet();
-    private static BitSet prevKeys = new BitSet();
+    static void processEvents() {
+        for (int i = 0; i < eventCount; i++) {
+            Event e = buffer[i];
+            switch (e.kind) {
+                case MOUSE_IN:
+                    if (!R_LISTENERS.isEmpty()) {
+                        Vec2d nMouse = new Vec2d(e.x, e.y);
+                        Vec2d delta = new Vec2d(e.x - mouseX, e.y - mouseY);
+                        for (int j = 0; j < R_LISTENERS.size(); j++) {
+                            R_LISTENERS.get(j).receiveGeneralInput(MOUSE_IN, nMouse, delta, 0, false, false);
+                        }
+                    }
+                    mouseX = e.x;
+                    mouseY = e.y;
+                    break;
+                case KEY_IN:
+                    boolean nks = e.action != GLFW_RELEASE;
+                    for (int j = 0; j < R_LISTENERS.size(); j++) {
+                        R_LISTENERS.get(j).receiveGeneralInput(KEY_IN, null, null, e.code, nks, nks != keys.get(e.code));
+                    }
+                    keys.set(e.code, nks);
+                    break;
+                case MOUSE_BUTTON_IN:
+                    boolean nbs = e.action != GLFW_RELEASE;
+                    if (!R_LISTENERS.isEmpty()) {
+                        Vec2d nMouse = new Vec2d(mouseX, mouseY);
+                        for (int j = 0; j < R_LISTENERS.size(); j++) {
+                            R_LISTENERS.get(j).receiveGeneralInput(MOUSE_BUTTON_IN, nMouse, null, e.code, nbs, nbs != buttons.get(e.code));
+                        }
+                    }
+                    buttons.set(e.code, nbs);
+                    break;
+                case MOUSE_WHEEL_IN:
+                    if (!R_LISTENERS.isEmpty()) {
+                        Vec2d nwo = new Vec2d(e.x, e.y);
+                        Vec2d delta = new Vec2d(e.x - wheelX, e.y - wheelY);
+                        for (int j = 0; j < R_LISTENERS.size(); j++) {
+                            R_LISTENERS.get(j).receiveGeneralInput(MOUSE_WHEEL_IN, nwo, delta, 0, false, false);
+                        }
+                    }
+                    wheelX = e.x;
+                    wheelY = e.y;
+                    mouseWheel += e.y;
+                    break;
+            }
+        }
+    }
+
+    private static final BitSet keys = new BitSet(GLFW_KEY_LAST + 1);
+    private static final BitSet prevKeys = new BitSet(GLFW_KEY_LAST + 1);
 
-    private static Vec2d mouse = new Vec2d(0, 0);
-    private static Vec2d prevMouse = new Vec2d(0, 0);
+    private static double mouseX, mouseY;
+    private static double prevMouseX, prevMouseY;
 
-    private static BitSet buttons = new BitSet();
-    private static BitSet prevButtons = new BitSet();
+    private static final BitSet buttons = new BitSet(GLFW_MOUSE_BUTTON_LAST + 1);
+    private static final BitSet prevButtons = new BitSet(GLFW_MOUSE_BUTTON_LAST + 1);
 
     private static double mouseWheel;
-    private static Vec2d vecMouseWheel = new Vec2d(0, 0);
+    private static double wheelX, wheelY;
 
     public static boolean keyDown(int key) {
         return keys.get(key);
@@ -93,7 +208,7 @@ public abstract class Input {
     }
 
     public static Vec2d mouse(Camera2d camera) {
-        return camera.toWorldCoords(mouse);
+        return camera.toWorldCoords(new Vec2d(mouseX, mouseY));
     }
 
     public static Vec2d mouseDelta() {
@@ -101,7 +216,7 @@ public abstract class Input {
     }
 
     public static Vec2d mouseDelta(Camera2d camera) {
-        return camera.toWorldCoords(mouse.sub(prevMouse));
+        return camera.toWorldCoords(new Vec2d(mouseX - prevMouseX, mouseY - prevMouseY));
     }
 
     public static boolean mouseDown(int button) {
@@ -116,10 +231,38 @@ public abstract class Input {
         return !buttons.get(button) && prevButtons.get(button);
     }
 
+    /**
+     * Returns the total vertical scroll of every wheel event this frame, or
+     * since the last tick when Settings.FIXED_TICK_RATE is set. Before input
+     * was buffered this was only the last event's offset, so several scroll
+     * events in one frame now add up instead of the last one winning.
+     *
+     * @return The summed vertical scroll offset.
+     */
     public static double mouseWheel() {
         return mouseWheel;
     }
 
+    public static class Event {
+
+        /**
+         * One of MOUSE_IN, KEY_IN, MOUSE_BUTTON_IN or MOUSE_WHEEL_IN.
+         */
+        public int kind;
+        /**
+         * The key or mouse button, for key and mouse button events.
+         */
+        public int code;
+        /**
+         * The GLFW action, for key and mouse button events.
+         */
+        public int action;
+        /**
+         * The normalized mouse position, or the wheel offsets.
+         */
+        public double x, y;
+    }
+
     public interface ReactiveInputListener {
 
         public void receiveGeneralInput(int kind, Vec2d mouse, Vec2d deltaMouse, int key, boolean pressed, boolean changed);
@@ -0,0 +1,72 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+public class IntProperty {
+
+    private int value;
+    private Modifier[] modifiers = {};
+    private int size;
+
+    public IntProperty(int value) {
+        this.value = value;
+    }
+
+    public Modifier addModifier(IntUnaryOperator modFunction) {
+        return addModifier(0, modFunction);
+    }
+
+    public Modifier addModifier(double depth, IntUnaryOperator modFunction) {
+        Modifier m = new Modifier(depth, modFunction);
+        int i = size;
+        while (i > 0 && Double.compare(modifiers[i - 1].depth, depth) > 0) {
+            i--;
+        }
+        if (size == modifiers.length) {
+            modifiers = Arrays.copyOf(modifiers, Math.max(4, 2 * size));
+        }
+        System.arraycopy(modifiers, i, modifiers, i + 1, size - i);
+        modifiers[i] = m;
+        size++;
+        return m;
+    }
+
+    public int get() {
+        int returnVal = value;
+        for (int i = 0; i < size; i++) {
+            returnVal = modifiers[i].modFunction.applyAsInt(returnVal);
+        }
+        return returnVal;
+    }
+
+    public int getBaseValue() {
+        return value;
+    }
+
+    public void setBaseValue(int value) {
+        this.value = value;
+    }
+
+    public class Modifier {
+
+        private final double depth;
+        private final IntUnaryOperator modFunction;
+
+        private Modifier(double depth, IntUnaryOperator modFunction) {
+            this.depth = depth;
+            this.modFunction = modFunction;
+        }
+
+        public void remove() {
+            for (int i = 0; i < size; i++) {
+                if (modifiers[i] == this) {
+                    System.arraycopy(modifiers, i + 1, modifiers, i, size - i - 1);
+                    size--;
+                    modifiers[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
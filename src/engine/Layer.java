@@ -1,28 +1,35 @@
 package engine;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeSet;
 
 public final class Layer implements Comparable<Layer> {
 
     static final Set<Layer> ALL_LAYERS = new TreeSet();
+    static Layer[] layerOrder = {};
 
     public static final Layer PREUPDATE = new Layer(-10);
     public static final Layer UPDATE = new Layer(0);
     public static final Layer POSTUPDATE = new Layer(10);
-    public static final Layer RENDER3D = new Layer(20);
-    public static final Layer RENDER2D = new Layer(30);
-    public static final Layer POSTRENDER = new Layer(40);
+    public static final Layer RENDER3D = new Layer(20, true);
+    public static final Layer RENDER2D = new Layer(30, true);
+    public static final Layer POSTRENDER = new Layer(40, true);
 
-    public Collection<Behavior> behaviors = new HashSet();
+    // The behaviors of this layer in the default world; see World.behaviors for the others
+    public Collection<Behavior> behaviors = Settings.ARCHETYPE_STORAGE ? new ArchetypeStorage() : new BehaviorList();
     public final double order;
+    public final boolean render;
 
     public Layer(double order) {
+        this(order, false);
+    }
+
+    public Layer(double order, boolean render) {
         this.order = order;
+        this.render = render;
         ALL_LAYERS.add(this);
+        layerOrder = ALL_LAYERS.toArray(new Layer[ALL_LAYERS.size()]);
     }
 
     @Override
@@ -46,6 +53,6 @@ public final class Layer implements Comparable<Layer> {
     }
 
     public void stepAll() {
-        new LinkedList<>(behaviors).forEach(Behavior::step);
+        World.current().stepLayer(this);
     }
 }
@@ -0,0 +1,21 @@
+package engine;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a behavior whose step only touches its own root's subbehaviors, so
+ * that instances belonging to different roots can be stepped concurrently.
+ * The listed classes are the sibling behavior types it reads or writes, and
+ * are used to keep conflicting behavior types out of the same parallel phase.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ParallelSafe {
+
+    Class<? extends Behavior>[] reads() default {};
+
+    Class<? extends Behavior>[] writes() default {};
+}
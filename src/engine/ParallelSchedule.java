@@ -0,0 +1,142 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class ParallelSchedule {
+
+    private static final Map<Class<? extends Behavior>, Access> ACCESS = new HashMap();
+    private static ForkJoinPool pool;
+
+    /*
+    Each parallel-safe behavior class is assigned to the first phase containing
+    no class it conflicts with. Phases run one after another, and all the
+    behaviors within a phase are split across the pool.
+     */
+    private final Map<Class<? extends Behavior>, Integer> phaseOf = new HashMap();
+    private final List<List<Access>> phaseAccess = new ArrayList();
+    private final List<List<Behavior>> phases = new ArrayList();
+
+    private static synchronized Access access(Class<? extends Behavior> c) {
+        if (!ACCESS.containsKey(c)) {
+            ParallelSafe ps = c.getAnnotation(ParallelSafe.class);
+            ACCESS.put(c, ps == null ? null : new Access(c, ps));
+        }
+        return ACCESS.get(c);
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null || pool.getParallelism() != Settings.PARALLEL_THREADS) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(Settings.PARALLEL_THREADS);
+        }
+        return pool;
+    }
+
+    private int phaseOf(Class<? extends Behavior> c) {
+        Integer phase = phaseOf.get(c);
+        if (phase == null) {
+            Access a = access(c);
+            if (a == null) {
+                phase = -1;
+            } else {
+                phase = 0;
+                while (phase < phaseAccess.size() && phaseAccess.get(phase).stream().anyMatch(a::conflictsWith)) {
+                    phase++;
+                }
+                if (phase == phaseAccess.size()) {
+                    phaseAccess.add(new ArrayList());
+                    phases.add(new ArrayList());
+                }
+                phaseAccess.get(phase).add(a);
+            }
+            phaseOf.put(c, phase);
+        }
+        return phase;
+    }
+
+    void stepAll(BehaviorStorage storage) {
+        storage.applyPending();
+        for (Iterator<Behavior> it = storage.activeIterator(); it.hasNext();) {
+            Behavior b = it.next();
+            int phase = phaseOf(b.getClass());
+            if (phase < 0) {
+                b.step();
+            } else {
+                phases.get(phase).add(b);
+            }
+        }
+        for (List<Behavior> phase : phases) {
+            if (!phase.isEmpty()) {
+                pool().invoke(new StepTask(World.current(), phase, 0, phase.size(), Math.max(256, phase.size() / (4 * Settings.PARALLEL_THREADS))));
+                phase.clear();
+            }
+        }
+    }
+
+    private static class Access {
+
+        private final Set<Class<? extends Behavior>> reads = new HashSet();
+        private final Set<Class<? extends Behavior>> writes = new HashSet();
+
+        private Access(Class<? extends Behavior> c, ParallelSafe ps) {
+            writes.add(c);
+            writes.addAll(Arrays.asList(ps.writes()));
+            reads.addAll(writes);
+            reads.addAll(Arrays.asList(ps.reads()));
+        }
+
+        private boolean conflictsWith(Access other) {
+            return !disjoint(writes, other.reads) || !disjoint(other.writes, reads);
+        }
+
+        private static boolean disjoint(Set<Class<? extends Behavior>> s1, Set<Class<? extends Behavior>> s2) {
+            return s1.stream().noneMatch(s2::contains);
+        }
+    }
+
+    private static class StepTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final World world;
+        private final List<Behavior> behaviors;
+        private final int start, end, threshold;
+
+        private StepTask(World world, List<Behavior> behaviors, int start, int end, int threshold) {
+            this.world = world;
+            this.behaviors = behaviors;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                // Pool threads step behaviors for any world, so they need to know which one this is
+                World prev = World.setCurrent(world);
+                try {
+                    for (int i = start; i < end; i++) {
+                        behaviors.get(i).step();
+                    }
+                } finally {
+                    World.setCurrent(prev);
+                }
+            } else {
+                int mid = (start + end) / 2;
+                invokeAll(new StepTask(world, behaviors, start, mid, threshold), new StepTask(world, behaviors, mid, end, threshold));
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package engine;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public abstract class Profiler {
+
+    /*
+    Each metric accumulates nanoseconds over the current frame, and nextFrame()
+    moves the totals into a ring buffer holding the last
+    Settings.PROFILER_FRAMES frames. Metrics are keyed by layer, by behavior
+    class, or by name for the parts of Core.run outside the layers.
+     */
+    private static final Map<Object, Metric> METRICS = new LinkedHashMap();
+    private static int frames;
+    private static long frameStart;
+
+    public static void clear() {
+        METRICS.clear();
+        frames = 0;
+        frameStart = 0;
+    }
+
+    public static void dumpCSV(String fileName) {
+        try (PrintWriter writer = new PrintWriter(fileName, "UTF-8")) {
+            List<Metric> metrics = new ArrayList(METRICS.values());
+            writer.print("frame");
+            for (Metric m : metrics) {
+                writer.print("," + m.name);
+            }
+            writer.println();
+            for (int f = frames - recordedFrames(); f < frames; f++) {
+                writer.print(f);
+                for (Metric m : metrics) {
+                    // Metrics that started later, or keep fewer frames, leave their older cells empty
+                    writer.print(f < frames - m.sampleCount() ? "," : "," + m.ring[f % m.ring.length] / 1e6);
+                }
+                writer.println();
+            }
+        } catch (FileNotFoundException | UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public static void dumpJSON(String fileName) {
+        try (PrintWriter writer = new PrintWriter(fileName, "UTF-8")) {
+            writer.println("{");
+            writer.println("  \"frames\": " + recordedFrames() + ",");
+            writer.println("  \"metrics\": [");
+            int i = 0;
+            for (Metric m : METRICS.values()) {
+                long[] sorted = m.sortedSamples();
+                writer.print("    {\"name\": \"" + m.name.replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+                        + ", \"frames\": " + m.sampleCount()
+                        + ", \"mean\": " + m.mean() / 1e6
+                        + ", \"p50\": " + percentile(sorted, 50) / 1e6
+                        + ", \"p95\": " + percentile(sorted, 95) / 1e6
+                        + ", \"p99\": " + percentile(sorted, 99) / 1e6
+                        + ", \"samplesNanos\": " + Arrays.toString(m.samples()).replace(" ", "") + "}");
+                writer.println(++i < METRICS.size() ? "," : "");
+            }
+            writer.println("  ]");
+            writer.println("}");
+        } catch (FileNotFoundException | UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    static Metric metric(Object key) {
+        Metric m = METRICS.get(key);
+        if (m == null) {
+            String name;
+            if (key instanceof Layer) {
+                name = "layer " + ((Layer) key).order;
+            } else if (key instanceof Class) {
+                name = ((Class) key).getName();
+            } else {
+                name = key.toString();
+            }
+            m = new Metric(name);
+            METRICS.put(key, m);
+        }
+        return m;
+    }
+
+    // The number of frames any metric still has samples for
+    private static int recordedFrames() {
+        int r = 0;
+        for (Metric m : METRICS.values()) {
+            r = Math.max(r, m.sampleCount());
+        }
+        return r;
+    }
+
+    static void nextFrame() {
+        long time = System.nanoTime();
+        if (frameStart != 0) {
+            record("frame", time - frameStart);
+            for (Metric m : METRICS.values()) {
+                m.ring[frames % m.ring.length] = m.current;
+                m.current = 0;
+                m.recorded++;
+            }
+            frames++;
+        }
+        frameStart = time;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100 * sorted.length) - 1)];
+    }
+
+    /**
+     * Returns the given percentile of a metric's per-frame time over the
+     * recorded frames, in seconds.
+     *
+     * @param key The layer, behavior class, or name of the metric.
+     * @param p The percentile, from 0 to 100.
+     * @return The percentile frame time in seconds.
+     */
+    public static double percentile(Object key, double p) {
+        Metric m = METRICS.get(key);
+        return m == null ? 0 : percentile(m.sortedSamples(), p) / 1e9;
+    }
+
+    static void record(Object key, long nanos) {
+        metric(key).current += nanos;
+    }
+
+    public static String summary() {
+        StringBuilder sb = new StringBuilder(String.format("%-50s %10s %10s %10s %10s%n", "metric (ms)", "mean", "p50", "p95", "p99"));
+        for (Metric m : METRICS.values()) {
+            long[] sorted = m.sortedSamples();
+            sb.append(String.format("%-50s %10.4f %10.4f %10.4f %10.4f%n", m.name, m.mean() / 1e6,
+                    percentile(sorted, 50) / 1e6, percentile(sorted, 95) / 1e6, percentile(sorted, 99) / 1e6));
+        }
+        return sb.toString();
+    }
+
+    static class Metric {
+
+        private final String name;
+        private final long[] ring = new long[Settings.PROFILER_FRAMES];
+        long current;
+        // The number of frames this metric has been recorded for, which is fewer than the global count if it was made later
+        private int recorded;
+
+        private Metric(String name) {
+            this.name = name;
+        }
+
+        private double mean() {
+            return Arrays.stream(samples()).average().orElse(0);
+        }
+
+        private int sampleCount() {
+            return Math.min(recorded, ring.length);
+        }
+
+        private long[] samples() {
+            int count = sampleCount();
+            long[] r = new long[count];
+            for (int i = 0; i < count; i++) {
+                r[i] = ring[(frames - count + i) % ring.length];
+            }
+            return r;
+        }
+
+        private long[] sortedSamples() {
+            long[] r = samples();
+            Arrays.sort(r);
+            return r;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package engine;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
 import java.util.function.Function;
 
@@ -14,16 +16,21 @@ public class Queryable<T> {
     public Modifier addModifier(double depth, Function<T, T> modFunction) {
         Modifier m = new Modifier(depth, modFunction);
         modifiers().value.add(m);
+        modifiersChanged();
         return m;
     }
 
     public Property<TreeSet<Modifier>> modifiers() {
         if (modifiers == null) {
             modifiers = new Property(new TreeSet());
+            modifiers.dependents.add(this::modifiersChanged);
         }
         return modifiers;
     }
 
+    void modifiersChanged() {
+    }
+
     public T query(T value) {
         T returnVal = value;
         if (modifiers != null) {
@@ -41,6 +48,8 @@ public class Queryable<T> {
         private final int id = maxModifierID++;
         private final double depth;
         private final Function<T, T> modFunction;
+        private final Runnable invalidator = Queryable.this::modifiersChanged;
+        private List<Property<?>> dependencies;
 
         private Modifier(double depth, Function<T, T> modFunction) {
             this.depth = depth;
@@ -55,11 +64,38 @@ public class Queryable<T> {
             return Integer.compare(id, o.id);
         }
 
+        /**
+         * Declares that this modifier's function reads the given properties,
+         * so that memoized values depending on it are recomputed whenever any
+         * of them change.
+         *
+         * @param properties The properties this modifier reads.
+         * @return This modifier.
+         */
+        public Modifier dependsOn(Property<?>... properties) {
+            if (dependencies == null) {
+                dependencies = new ArrayList();
+            }
+            for (Property<?> p : properties) {
+                dependencies.add(p);
+                p.dependents.add(invalidator);
+            }
+            modifiersChanged();
+            return this;
+        }
+
         public void remove() {
             modifiers.value.remove(this);
             if (modifiers.shouldRemove()) {
                 modifiers = null;
             }
+            if (dependencies != null) {
+                for (Property<?> p : dependencies) {
+                    p.dependents.remove(invalidator);
+                }
+                dependencies = null;
+            }
+            modifiersChanged();
         }
     }
 
@@ -67,20 +103,63 @@ public class Queryable<T> {
 
         private T value;
 
+        /*
+        A memoized property caches the result of get() until its base value or
+        modifiers change, or until a property one of its modifiers depends on
+        changes. Invalidation is pushed through the dependents list.
+         */
+        private boolean memoize, valid, invalidating;
+        private T cachedValue;
+        private final List<Runnable> dependents = new ArrayList();
+
         public Property(T value) {
             this.value = value;
         }
 
         public T get() {
-            return query(value);
+            if (!memoize) {
+                return query(value);
+            }
+            if (!valid) {
+                cachedValue = query(value);
+                valid = true;
+            }
+            return cachedValue;
         }
 
         public T getBaseValue() {
             return value;
         }
 
+        public void invalidate() {
+            if ((valid || !memoize) && !invalidating) {
+                valid = false;
+                cachedValue = null;
+                invalidating = true;
+                try {
+                    for (int i = 0; i < dependents.size(); i++) {
+                        dependents.get(i).run();
+                    }
+                } finally {
+                    invalidating = false;
+                }
+            }
+        }
+
+        public Property<T> memoize() {
+            memoize = true;
+            valid = false;
+            return this;
+        }
+
+        @Override
+        void modifiersChanged() {
+            invalidate();
+        }
+
         public void setBaseValue(T value) {
             this.value = value;
+            invalidate();
         }
 
         private boolean shouldRemove() {
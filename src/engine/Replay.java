@@ -0,0 +1,174 @@
+package engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public abstract class Replay {
+
+    /*
+    A recording is a stream of tagged records. Input events are written as
+    they arrive, and each frame is closed by a FRAME record holding that
+    frame's dt, so playing a recording back applies exactly the events that
+    were seen before each frame was stepped. Listener events are not written,
+    since replaying the raw events regenerates them.
+     */
+    private static final byte FRAME = 0;
+    private static final byte CURSOR_POS = 1;
+    private static final byte KEY = 2;
+    private static final byte MOUSE_BUTTON = 3;
+    private static final byte SCROLL = 4;
+
+    private static DataOutputStream out;
+    private static DataInputStream in;
+    private static int frames;
+
+    static void init() {
+        try {
+            if (Settings.PLAY_REPLAY != null) {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(Settings.PLAY_REPLAY), 1 << 16));
+            }
+            if (Settings.RECORD_REPLAY != null) {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(Settings.RECORD_REPLAY), 1 << 16));
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    static void close() {
+        try {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns the number of frames recorded or played back so far.
+     *
+     * @return The number of frames.
+     */
+    public static int frames() {
+        return frames;
+    }
+
+    /**
+     * Applies the next frame's input events from the recording being played.
+     *
+     * @return The recorded dt of the frame, or -1 if the recording has ended.
+     */
+    static double playFrame() {
+        try {
+            while (true) {
+                byte tag;
+                try {
+                    tag = in.readByte();
+                } catch (EOFException ex) {
+                    return -1;
+                }
+                switch (tag) {
+                    case FRAME:
+                        frames++;
+                        return in.readDouble();
+                    case CURSOR_POS:
+                        Input.cursorPos(in.readDouble(), in.readDouble());
+                        break;
+                    case KEY:
+                        Input.key(in.readShort(), in.readByte());
+                        break;
+                    case MOUSE_BUTTON:
+                        Input.mouseButton(in.readByte(), in.readByte());
+                        break;
+                    case SCROLL:
+                        Input.scroll(in.readDouble(), in.readDouble());
+                        break;
+                    default:
+                        throw new RuntimeException("Corrupt replay file: unknown record " + tag);
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public static boolean playing() {
+        return in != null;
+    }
+
+    public static boolean recording() {
+        return out != null;
+    }
+
+    static void recordCursorPos(double x, double y) {
+        if (out != null) {
+            try {
+                out.writeByte(CURSOR_POS);
+                out.writeDouble(x);
+                out.writeDouble(y);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    static void recordFrame(double dt) {
+        if (out != null) {
+            try {
+                out.writeByte(FRAME);
+                out.writeDouble(dt);
+                frames++;
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    static void recordKey(int key, int action) {
+        if (out != null) {
+            try {
+                out.writeByte(KEY);
+                out.writeShort(key);
+                out.writeByte(action);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    static void recordMouseButton(int button, int action) {
+        if (out != null) {
+            try {
+                out.writeByte(MOUSE_BUTTON);
+                out.writeByte(button);
+                out.writeByte(action);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    static void recordScroll(double xoffset, double yoffset) {
+        if (out != null) {
+            try {
+                out.writeByte(SCROLL);
+                out.writeDouble(xoffset);
+                out.writeDouble(yoffset);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+}
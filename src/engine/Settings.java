@@ -14,6 +14,7 @@ public class Settings {
     public static int WINDOW_HEIGHT_DIVISOR = 1;
     
     public static boolean CLOSE_ON_X = true;
+    public static boolean HEADLESS = false; // Skips the window, input and render layers
 
     public static Color BACKGROUND_COLOR = Color.BLACK;
     public static int ANTI_ALIASING = 1; // Scale from 1 - 16
@@ -24,8 +25,18 @@ public class Settings {
     public static boolean SHOW_OPENGL_DEBUG_INFO = true;
     public static boolean MULTITHREADED_OPENGL = false;
 
+    public static boolean ARCHETYPE_STORAGE = false;
+    public static int PARALLEL_THREADS = 1; // Threads used to step non-render layers
+
     public static double MIN_FRAME_TIME = .001;
     public static double MAX_FRAME_TIME = .1;
+    public static int FIXED_TICK_RATE = 0; // Ticks per second, or 0 to step once per frame
+    public static int MAX_TICKS_PER_FRAME = 5; // Once a frame runs this many ticks, any further backlog is dropped
+    public static boolean ENABLE_PROFILER = false;
+    public static int PROFILER_FRAMES = 300;
+    public static double MAIN_THREAD_TASK_BUDGET = .004; // Seconds per frame for onMainThread calls and Tasks, or 0 for no limit; calls over it wait for the next frame
+    public static String RECORD_REPLAY = null; // File to record each frame's dt and input to
+    public static String PLAY_REPLAY = null; // File to replay headlessly, as fast as possible
     
     public static String TEXTURE_LOAD_FOLDER = "sprites/";
     public static String FONT_LOAD_FOLDER = "fonts/";
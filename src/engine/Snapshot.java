@@ -0,0 +1,475 @@
+package engine;
+
+import graphics.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import util.math.Vec2d;
+import util.math.Vec3d;
+
+public abstract class Snapshot {
+
+    /*
+    A snapshot is a header followed by a stream of records. The first time a
+    behavior class appears, a CLASS record gives its name and the name and
+    type of each saved field. Each ROOT record then lists the root's
+    subbehaviors by class index, each followed by its field values. Loading
+    rebuilds a root from its class's factory, requires any other subbehaviors
+    it had, and assigns the saved fields by name, so fields that were added,
+    removed or changed type since the snapshot was written are skipped.
+
+    Saved fields are the public, non-static, non-final, non-transient fields
+    of primitive, String, Vec2d, Vec3d or Color type. Anything else, like a
+    reference to another subbehavior, is expected to be set up again by the
+    behavior's constructor.
+     */
+    private static final int MAGIC = 0x42534e50;
+    private static final int VERSION = 1;
+
+    private static final byte END = 0;
+    private static final byte CLASS = 1;
+    private static final byte ROOT = 2;
+
+    private static final byte BOOLEAN = 0;
+    private static final byte BYTE = 1;
+    private static final byte CHAR = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte STRING = 8;
+    private static final byte VEC2D = 9;
+    private static final byte VEC3D = 10;
+    private static final byte COLOR = 11;
+
+    private static final Class<?>[] TYPES = {boolean.class, byte.class, char.class, short.class, int.class, long.class,
+        float.class, double.class, String.class, Vec2d.class, Vec3d.class, Color.class};
+
+    private static final int LOAD_BATCH_SIZE = 4096;
+
+    private static final Map<Class<?>, Field[]> SAVED_FIELDS = new ConcurrentHashMap();
+
+    /**
+     * Reads every root behavior in a snapshot and creates them, a batch at a
+     * time, without holding the whole snapshot in memory.
+     *
+     * @param in The stream to read the snapshot from. It is closed once the
+     * snapshot has been read.
+     * @return The number of root behaviors loaded.
+     */
+    public static int load(InputStream in) {
+        int count = 0;
+        try (Reader reader = new Reader(in)) {
+            List<Behavior> batch = new ArrayList(LOAD_BATCH_SIZE);
+            for (Behavior b = reader.next(); b != null; b = reader.next()) {
+                batch.add(b);
+                count++;
+                if (batch.size() == LOAD_BATCH_SIZE) {
+                    Behavior.createAll(batch);
+                    batch.clear();
+                }
+            }
+            Behavior.createAll(batch);
+        }
+        return count;
+    }
+
+    private static Field[] savedFields(Class<?> c) {
+        Field[] fields = SAVED_FIELDS.get(c);
+        if (fields == null) {
+            List<Field> list = new ArrayList();
+            for (Field f : c.getFields()) {
+                int mods = f.getModifiers();
+                if (!Modifier.isStatic(mods) && !Modifier.isFinal(mods) && !Modifier.isTransient(mods) && typeOf(f) >= 0) {
+                    f.setAccessible(true);
+                    list.add(f);
+                }
+            }
+            list.sort(Comparator.comparing(Field::getName));
+            fields = list.toArray(new Field[list.size()]);
+            SAVED_FIELDS.put(c, fields);
+        }
+        return fields;
+    }
+
+    private static byte typeOf(Field f) {
+        for (byte i = 0; i < TYPES.length; i++) {
+            if (TYPES[i] == f.getType()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Only roots that load can rebuild are saved, which leaves out things like the anonymous behaviors of Layer.onStep
+    private static final ClassValue<Boolean> SAVEABLE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> c) {
+            if (!Modifier.isPublic(c.getModifiers()) || c.isAnonymousClass() || c.isLocalClass()) {
+                return false;
+            }
+            try {
+                c.getConstructor();
+                return true;
+            } catch (NoSuchMethodException ex) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * Writes every root behavior in the current world, including ones
+     * created or destroyed this frame, to a snapshot. Roots whose class is
+     * not public or has no empty public constructor, like the behaviors made
+     * by Layer.onStep, can't be rebuilt when loading, so they are skipped.
+     *
+     * @param out The stream to write the snapshot to. It is closed once the
+     * snapshot has been written.
+     * @return The number of root behaviors written.
+     */
+    public static int save(OutputStream out) {
+        try (Writer writer = new Writer(out)) {
+            World world = World.current();
+            for (Layer l : Layer.layerOrder) {
+                Collection<Behavior> behaviors = world.behaviors(l);
+                if (behaviors instanceof BehaviorStorage) {
+                    ((BehaviorStorage) behaviors).forEachCurrent(b -> {
+                        if (b.isRoot() && SAVEABLE.get(b.getClass())) {
+                            writer.write(b);
+                        }
+                    });
+                } else {
+                    for (Behavior b : behaviors) {
+                        if (b.isRoot() && SAVEABLE.get(b.getClass())) {
+                            writer.write(b);
+                        }
+                    }
+                }
+            }
+            return writer.count;
+        }
+    }
+
+    private static Object readValue(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case CHAR:
+                return in.readChar();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return in.readBoolean() ? in.readUTF() : null;
+            case VEC2D:
+                return in.readBoolean() ? new Vec2d(in.readDouble(), in.readDouble()) : null;
+            case VEC3D:
+                return in.readBoolean() ? new Vec3d(in.readDouble(), in.readDouble(), in.readDouble()) : null;
+            case COLOR:
+                return in.readBoolean() ? new Color(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()) : null;
+            default:
+                throw new RuntimeException("Corrupt snapshot: unknown field type " + type);
+        }
+    }
+
+    private static void readField(DataInputStream in, byte type, Field f, Object o) throws IOException, IllegalAccessException {
+        // The most common primitives are read straight into the field, to avoid boxing them
+        switch (type) {
+            case BOOLEAN:
+                f.setBoolean(o, in.readBoolean());
+                break;
+            case INT:
+                f.setInt(o, in.readInt());
+                break;
+            case DOUBLE:
+                f.setDouble(o, in.readDouble());
+                break;
+            default:
+                f.set(o, readValue(in, type));
+        }
+    }
+
+    private static void writeField(DataOutputStream out, byte type, Field f, Object o) throws IOException, IllegalAccessException {
+        switch (type) {
+            case BOOLEAN:
+                out.writeBoolean(f.getBoolean(o));
+                break;
+            case BYTE:
+                out.writeByte(f.getByte(o));
+                break;
+            case CHAR:
+                out.writeChar(f.getChar(o));
+                break;
+            case SHORT:
+                out.writeShort(f.getShort(o));
+                break;
+            case INT:
+                out.writeInt(f.getInt(o));
+                break;
+            case LONG:
+                out.writeLong(f.getLong(o));
+                break;
+            case FLOAT:
+                out.writeFloat(f.getFloat(o));
+                break;
+            case DOUBLE:
+                out.writeDouble(f.getDouble(o));
+                break;
+            case STRING:
+                String s = (String) f.get(o);
+                out.writeBoolean(s != null);
+                if (s != null) {
+                    out.writeUTF(s);
+                }
+                break;
+            case VEC2D:
+                Vec2d v2 = (Vec2d) f.get(o);
+                out.writeBoolean(v2 != null);
+                if (v2 != null) {
+                    out.writeDouble(v2.x);
+                    out.writeDouble(v2.y);
+                }
+                break;
+            case VEC3D:
+                Vec3d v3 = (Vec3d) f.get(o);
+                out.writeBoolean(v3 != null);
+                if (v3 != null) {
+                    out.writeDouble(v3.x);
+                    out.writeDouble(v3.y);
+                    out.writeDouble(v3.z);
+                }
+                break;
+            case COLOR:
+                Color c = (Color) f.get(o);
+                out.writeBoolean(c != null);
+                if (c != null) {
+                    out.writeDouble(c.r);
+                    out.writeDouble(c.g);
+                    out.writeDouble(c.b);
+                    out.writeDouble(c.a);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Reads root behaviors from a snapshot one at a time. The behaviors are
+     * constructed but not created.
+     */
+    public static class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final List<SavedClass> classes = new ArrayList();
+        private boolean ended;
+
+        public Reader(InputStream in) {
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            try {
+                if (this.in.readInt() != MAGIC) {
+                    throw new RuntimeException("Not a snapshot");
+                }
+                int version = this.in.readInt();
+                if (version != VERSION) {
+                    throw new RuntimeException("Unsupported snapshot version: " + version);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        /**
+         * Reads the next root behavior in the snapshot.
+         *
+         * @return The root behavior, or null if the snapshot has ended.
+         */
+        public Behavior next() {
+            try {
+                while (!ended) {
+                    byte tag;
+                    try {
+                        tag = in.readByte();
+                    } catch (EOFException ex) {
+                        throw new RuntimeException("Snapshot ended unexpectedly");
+                    }
+                    switch (tag) {
+                        case END:
+                            ended = true;
+                            break;
+                        case CLASS:
+                            classes.add(new SavedClass(in));
+                            break;
+                        case ROOT:
+                            return readRoot();
+                        default:
+                            throw new RuntimeException("Corrupt snapshot: unknown record " + tag);
+                    }
+                }
+                return null;
+            } catch (IOException | IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private Behavior readRoot() throws IOException, IllegalAccessException {
+            int subCount = in.readShort();
+            Behavior root = null;
+            for (int i = 0; i < subCount; i++) {
+                SavedClass sc = classes.get(in.readShort());
+                Behavior b = root == null ? sc.factory.get() : root.require(sc.c);
+                if (root == null) {
+                    root = b;
+                }
+                for (int j = 0; j < sc.types.length; j++) {
+                    if (sc.fields[j] != null) {
+                        readField(in, sc.types[j], sc.fields[j], b);
+                    } else {
+                        readValue(in, sc.types[j]);
+                    }
+                }
+            }
+            return root;
+        }
+    }
+
+    private static class SavedClass {
+
+        private final Class<? extends Behavior> c;
+        private final Supplier<? extends Behavior> factory;
+        private final byte[] types;
+        private final Field[] fields;
+
+        private SavedClass(DataInputStream in) throws IOException {
+            String name = in.readUTF();
+            try {
+                c = Class.forName(name).asSubclass(Behavior.class);
+            } catch (ClassNotFoundException | ClassCastException ex) {
+                throw new RuntimeException("Snapshot contains an unknown behavior class: " + name);
+            }
+            factory = Behavior.factory(c);
+            Map<String, Field> current = new HashMap();
+            for (Field f : savedFields(c)) {
+                current.put(f.getName(), f);
+            }
+            types = new byte[in.readShort()];
+            fields = new Field[types.length];
+            for (int i = 0; i < types.length; i++) {
+                Field f = current.get(in.readUTF());
+                types[i] = in.readByte();
+                if (f != null && typeOf(f) == types[i]) {
+                    fields[i] = f;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes root behaviors to a snapshot one at a time.
+     */
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final Map<Class<?>, Integer> classIds = new IdentityHashMap();
+        private int count;
+
+        public Writer(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            try {
+                this.out.writeInt(MAGIC);
+                this.out.writeInt(VERSION);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.writeByte(END);
+                out.close();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        /**
+         * Writes a root behavior and all of its subbehaviors.
+         *
+         * @param root The root behavior.
+         */
+        public void write(Behavior root) {
+            if (!root.isRoot()) {
+                throw new RuntimeException("Can only save root behaviors");
+            }
+            try {
+                for (Class<? extends Behavior> c : root.getSubBehaviors()) {
+                    if (!classIds.containsKey(c)) {
+                        writeClass(c);
+                    }
+                }
+                out.writeByte(ROOT);
+                out.writeShort(root.getSubBehaviors().size());
+                for (Class<? extends Behavior> c : root.getSubBehaviors()) {
+                    out.writeShort(classIds.get(c));
+                    Behavior b = root.get(c);
+                    for (Field f : savedFields(c)) {
+                        writeField(out, typeOf(f), f, b);
+                    }
+                }
+                count++;
+            } catch (IOException | IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private void writeClass(Class<? extends Behavior> c) throws IOException {
+            if (classIds.size() > Short.MAX_VALUE) {
+                throw new RuntimeException("Too many behavior classes in one snapshot");
+            }
+            classIds.put(c, classIds.size());
+            Field[] fields = savedFields(c);
+            out.writeByte(CLASS);
+            out.writeUTF(c.getName());
+            out.writeShort(fields.length);
+            for (Field f : fields) {
+                out.writeUTF(f.getName());
+                out.writeByte(typeOf(f));
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * A long piece of main thread work that is split into small steps, so it can
+ * be spread over several frames instead of causing a hitch. Each frame, the
+ * world steps its running tasks, highest priority first, until the
+ * Settings.MAIN_THREAD_TASK_BUDGET left over from queued onMainThread calls
+ * runs out. The first task always gets at least one step per frame, so work
+ * keeps moving even when the budget is spent.
+ */
+public abstract class Task {
+
+    /**
+     * Tasks with a higher priority are stepped first. Tasks with the same
+     * priority are stepped in the order they were started.
+     */
+    public int priority;
+
+    private volatile boolean started, cancelled, done;
+    private final List<Runnable> onFinish = new ArrayList();
+
+    /**
+     * Stops the task from being stepped again. Its finish callbacks are not
+     * run.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    void finish() {
+        done = true;
+        for (Runnable r : onFinish) {
+            r.run();
+        }
+    }
+
+    /**
+     * Creates a task that calls body once for each index from start
+     * (inclusive) to end (exclusive), one index per step.
+     *
+     * @param start The first index.
+     * @param end The index to stop before.
+     * @param body The work to do for one index.
+     * @return The task, which still needs to be started.
+     */
+    public static Task forRange(int start, int end, IntConsumer body) {
+        return new Task() {
+            private int i = start;
+
+            @Override
+            protected boolean step() {
+                if (i < end) {
+                    body.accept(i++);
+                }
+                return i < end;
+            }
+        };
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Creates a task from a function that does one step of work and returns
+     * whether there is more to do.
+     *
+     * @param step The function to call each step.
+     * @return The task, which still needs to be started.
+     */
+    public static Task of(BooleanSupplier step) {
+        return new Task() {
+            @Override
+            protected boolean step() {
+                return step.getAsBoolean();
+            }
+        };
+    }
+
+    /**
+     * Starts running this task in the current world. It is first stepped at
+     * the start of the next frame.
+     *
+     * @return This task.
+     */
+    public Task start() {
+        if (started) {
+            throw new RuntimeException("Task has already been started");
+        }
+        started = true;
+        World world = World.current();
+        world.onMainThread(() -> world.startTask(this));
+        return this;
+    }
+
+    /**
+     * Does one small piece of the task's work. This should return quickly,
+     * since the frame's budget is only checked between steps.
+     *
+     * @return True if there is more work to do, false once the task is done.
+     */
+    protected abstract boolean step();
+
+    /**
+     * Creates a task that runs each of the given pieces of work as one step.
+     *
+     * @param steps The pieces of work, in order.
+     * @return The task, which still needs to be started.
+     */
+    public static Task steps(Runnable... steps) {
+        return forRange(0, steps.length, i -> steps[i].run());
+    }
+
+    /**
+     * Adds a callback to run on the main thread once the task is done.
+     *
+     * @param r The callback.
+     * @return This task.
+     */
+    public Task then(Runnable r) {
+        onFinish.add(r);
+        return this;
+    }
+}
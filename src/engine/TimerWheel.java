@@ -0,0 +1,78 @@
+package engine;
+
+import java.util.Arrays;
+
+class TimerWheel {
+
+    /*
+    A hashed timer wheel: each slot covers RESOLUTION seconds, and a behavior
+    waiting to wake is kept in the slot its wake time falls in, modulo the
+    number of slots. Advancing the wheel only visits the slots whose time has
+    passed, so the cost per frame depends on how many timers are due rather
+    than how many behaviors are asleep. Timers further than one turn of the
+    wheel away just stay in their slot until a later turn. Each behavior knows
+    its slot and index, so cancelling a timer is a swap-remove.
+     */
+    private static final int SLOTS = 512;
+    private static final double RESOLUTION = 1 / 60.;
+    // So a wake time lined up with a frame isn't pushed a frame late by rounding in the world's time
+    private static final double EPSILON = 1e-9;
+
+    private final Behavior[][] slots = new Behavior[SLOTS][];
+    private final int[] slotSizes = new int[SLOTS];
+    private long lastTick;
+
+    void advance(double time) {
+        long tick = tick(time);
+        long from = Math.max(lastTick, tick - SLOTS + 1);
+        for (long t = from; t <= tick; t++) {
+            int slot = (int) (t & (SLOTS - 1));
+            Behavior[] entries = slots[slot];
+            int i = 0;
+            while (i < slotSizes[slot]) {
+                Behavior b = entries[i];
+                if (b.wakeTime <= time + EPSILON) {
+                    cancel(b);
+                    b.wake();
+                } else {
+                    i++;
+                }
+            }
+        }
+        lastTick = tick;
+    }
+
+    void cancel(Behavior b) {
+        if (b.timerSlot < 0) {
+            return;
+        }
+        Behavior[] entries = slots[b.timerSlot];
+        int last = --slotSizes[b.timerSlot];
+        Behavior moved = entries[last];
+        entries[b.timerIndex] = moved;
+        moved.timerIndex = b.timerIndex;
+        entries[last] = null;
+        b.timerSlot = -1;
+    }
+
+    void schedule(Behavior b) {
+        cancel(b);
+        int slot = slot(Math.max(b.wakeTime, lastTick * RESOLUTION));
+        if (slots[slot] == null) {
+            slots[slot] = new Behavior[4];
+        } else if (slotSizes[slot] == slots[slot].length) {
+            slots[slot] = Arrays.copyOf(slots[slot], 2 * slotSizes[slot]);
+        }
+        b.timerSlot = slot;
+        b.timerIndex = slotSizes[slot];
+        slots[slot][slotSizes[slot]++] = b;
+    }
+
+    private static int slot(double time) {
+        return (int) (tick(time) & (SLOTS - 1));
+    }
+
+    private static long tick(double time) {
+        return (long) Math.floor(time / RESOLUTION);
+    }
+}
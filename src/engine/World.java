@@ -0,0 +1,411 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import util.MPSCQueue;
+
+/**
+ * An independent simulation, with its own behavior storage for every layer,
+ * its own tracked collections, its own queue of tasks to run on its thread,
+ * and its own clock. The static API (Core, Layer.stepAll, Behavior.track and
+ * so on) acts on whichever world the calling thread is currently stepping,
+ * and on the default world everywhere else. Several worlds can be stepped at
+ * once, each on its own thread.
+ */
+public class World {
+
+    private static final World DEFAULT = new World(true);
+    private static final ThreadLocal<World> CURRENT = new ThreadLocal();
+    // Until a second world exists, current() can skip the thread local
+    private static volatile boolean multipleWorlds;
+
+    private final Map<Layer, Collection<Behavior>> storages = new IdentityHashMap();
+    private final Map<Layer, ParallelSchedule> schedules = new IdentityHashMap();
+    private final Map<Class<? extends Behavior>, List<Collection<Behavior>>> trackedBehaviors = new HashMap();
+    private final Map<Class<? extends Behavior>, Collection<Behavior>> trackedSets = new HashMap();
+    private final MPSCQueue<Runnable> toRun = new MPSCQueue();
+    private final List<Task> tasks = new ArrayList();
+    private final List<Task> startedTasks = new ArrayList();
+    private volatile Thread thread;
+
+    final TimerWheel timers = new TimerWheel();
+    private double time;
+    private double dt;
+    private double accumulator;
+    private double interpolation = 1;
+
+    private int lastDrainCount;
+    private double lastDrainTime;
+    private double lastDrainMaxWait;
+
+    public World() {
+        this(false);
+    }
+
+    private World(boolean isDefault) {
+        if (!isDefault) {
+            multipleWorlds = true;
+        }
+    }
+
+    /**
+     * Returns the world the calling thread is stepping, or the default world
+     * if it isn't stepping one.
+     *
+     * @return The current world.
+     */
+    public static World current() {
+        if (!multipleWorlds) {
+            return DEFAULT;
+        }
+        World w = CURRENT.get();
+        return w == null ? DEFAULT : w;
+    }
+
+    public static World defaultWorld() {
+        return DEFAULT;
+    }
+
+    // Returns the previous current world, so it can be restored afterwards
+    static World setCurrent(World w) {
+        if (!multipleWorlds) {
+            return DEFAULT;
+        }
+        World prev = CURRENT.get();
+        CURRENT.set(w);
+        return prev;
+    }
+
+    /**
+     * Returns the collection the behaviors of a layer are stored in for this
+     * world. For the default world this is the layer's behaviors field.
+     *
+     * @param l The layer.
+     * @return The behaviors of that layer in this world.
+     */
+    public Collection<Behavior> behaviors(Layer l) {
+        if (this == DEFAULT) {
+            return l.behaviors;
+        }
+        Collection<Behavior> c = storages.get(l);
+        if (c == null) {
+            c = Settings.ARCHETYPE_STORAGE ? new ArchetypeStorage() : new BehaviorList();
+            storages.put(l, c);
+        }
+        return c;
+    }
+
+    public double dt() {
+        return dt;
+    }
+
+    private void drainToRun(long start, long deadline) {
+        int count = 0;
+        long maxWait = 0;
+        // Calls queued while draining wait for the next frame, so a call that keeps queueing itself can't stall this one
+        long queued = toRun.size();
+        Runnable r;
+        while (count < queued && (r = toRun.poll()) != null) {
+            maxWait = Math.max(maxWait, start - toRun.lastPolledTime());
+            r.run();
+            count++;
+            if (overBudget(deadline)) {
+                break;
+            }
+        }
+        lastDrainCount = count;
+        lastDrainTime = (System.nanoTime() - start) / 1e9;
+        lastDrainMaxWait = maxWait / 1e9;
+        if (Settings.ENABLE_PROFILER && this == DEFAULT) {
+            Profiler.record("onMainThread", System.nanoTime() - start);
+        }
+    }
+
+    private static boolean overBudget(long deadline) {
+        return Settings.MAIN_THREAD_TASK_BUDGET > 0 && System.nanoTime() > deadline;
+    }
+
+    public double interpolation() {
+        return interpolation;
+    }
+
+    public int lastDrainCount() {
+        return lastDrainCount;
+    }
+
+    public double lastDrainMaxWait() {
+        return lastDrainMaxWait;
+    }
+
+    public double lastDrainTime() {
+        return lastDrainTime;
+    }
+
+    /**
+     * Runs a task on the thread stepping this world, immediately if called
+     * from that thread and otherwise at the start of the world's next step.
+     * If Settings.MAIN_THREAD_TASK_BUDGET runs out, the rest of the queue
+     * waits for the step after.
+     *
+     * @param toRun The task to run.
+     */
+    public void onMainThread(Runnable toRun) {
+        if (toRun == null) {
+            throw new RuntimeException("toRun cannot be null");
+        }
+        if (Thread.currentThread() != thread()) {
+            this.toRun.offer(toRun);
+        } else {
+            toRun.run();
+        }
+    }
+
+    public long queuedTasks() {
+        return toRun.size();
+    }
+
+    /**
+     * Returns the number of tasks started in this world that are not yet done
+     * or cancelled. Only safe to call from the world's thread.
+     *
+     * @return The number of running tasks.
+     */
+    public int runningTasks() {
+        int count = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            count += tasks.get(i).isCancelled() ? 0 : 1;
+        }
+        for (int i = 0; i < startedTasks.size(); i++) {
+            count += startedTasks.get(i).isCancelled() ? 0 : 1;
+        }
+        return count;
+    }
+
+    /**
+     * Runs a task with this as the current world, for setting up a world
+     * outside of its step.
+     *
+     * @param r The task to run.
+     */
+    public void run(Runnable r) {
+        World prev = setCurrent(this);
+        try {
+            r.run();
+        } finally {
+            setCurrent(prev);
+        }
+    }
+
+    /**
+     * Steps this world forward by one frame on the calling thread. Tasks
+     * queued for the world run first, then every layer is stepped, using
+     * fixed ticks if Settings.FIXED_TICK_RATE is set. Only the default world
+     * has a window, so other worlds never step the render layers. With fixed
+     * ticks, input edges like Input.keyJustPressed are held until the next
+     * tick and seen by that tick only, so a frame with no ticks doesn't lose
+     * them and a frame with several doesn't repeat them.
+     *
+     * @param frameTime The time since the last frame, in seconds.
+     */
+    public void step(double frameTime) {
+        if (this != DEFAULT) {
+            thread = Thread.currentThread();
+        }
+        World prev = setCurrent(this);
+        try {
+            long start = System.nanoTime();
+            // Queued calls and tasks share one budget, and the calls go first
+            long deadline = start + (long) (Settings.MAIN_THREAD_TASK_BUDGET * 1e9);
+            drainToRun(start, deadline);
+            stepTasks(deadline);
+            boolean render = this == DEFAULT && !Settings.HEADLESS;
+            if (Settings.FIXED_TICK_RATE > 0) {
+                stepFixed(frameTime, render);
+            } else {
+                dt = frameTime;
+                interpolation = 1;
+                time += frameTime;
+                timers.advance(time);
+                for (Layer l : Layer.layerOrder) {
+                    if (render || !l.render) {
+                        stepLayer(l);
+                    }
+                }
+            }
+        } finally {
+            setCurrent(prev);
+        }
+    }
+
+    void startTask(Task t) {
+        // Tasks started while stepping tasks wait for the next frame
+        startedTasks.add(t);
+    }
+
+    private void stepTasks(long deadline) {
+        if (tasks.isEmpty() && startedTasks.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (Task t : startedTasks) {
+            int i = tasks.size();
+            while (i > 0 && tasks.get(i - 1).priority < t.priority) {
+                i--;
+            }
+            tasks.add(i, t);
+        }
+        startedTasks.clear();
+        int i = 0;
+        while (i < tasks.size()) {
+            Task t = tasks.get(i);
+            boolean more = !t.isCancelled();
+            while (more) {
+                more = t.step() && !t.isCancelled();
+                if (overBudget(deadline)) {
+                    break;
+                }
+            }
+            if (more) {
+                break;
+            }
+            tasks.remove(i);
+            if (!t.isCancelled()) {
+                t.finish();
+            }
+            if (overBudget(deadline)) {
+                break;
+            }
+        }
+        if (Settings.ENABLE_PROFILER && this == DEFAULT) {
+            Profiler.record("tasks", System.nanoTime() - start);
+        }
+    }
+
+    private void stepFixed(double frameTime, boolean render) {
+        double tickTime = 1. / Settings.FIXED_TICK_RATE;
+        accumulator += frameTime;
+        dt = tickTime;
+        int ticks = 0;
+        while (ticks < Settings.MAX_TICKS_PER_FRAME && accumulator >= tickTime) {
+            time += tickTime;
+            timers.advance(time);
+            for (Layer l : Layer.layerOrder) {
+                if (!l.render) {
+                    stepLayer(l);
+                }
+            }
+            if (this == DEFAULT) {
+                Input.nextTick();
+            }
+            accumulator -= tickTime;
+            ticks++;
+        }
+        if (ticks == Settings.MAX_TICKS_PER_FRAME) {
+            // Too far behind to catch up, so drop the whole ticks still owed rather than spiraling
+            accumulator %= tickTime;
+        }
+        interpolation = accumulator / tickTime;
+        dt = frameTime;
+        if (!render) {
+            return;
+        }
+        for (Layer l : Layer.layerOrder) {
+            if (l.render) {
+                stepLayer(l);
+            }
+        }
+    }
+
+    /**
+     * Steps every behavior of one layer in this world.
+     *
+     * @param l The layer to step.
+     */
+    public void stepLayer(Layer l) {
+        Collection<Behavior> behaviors = behaviors(l);
+        if (Settings.ENABLE_PROFILER && this == DEFAULT) {
+            stepLayerProfiled(l, behaviors);
+        } else if (behaviors instanceof BehaviorStorage) {
+            if (!l.render && Settings.PARALLEL_THREADS > 1) {
+                schedule(l).stepAll((BehaviorStorage) behaviors);
+            } else {
+                ((BehaviorStorage) behaviors).stepAll();
+            }
+        } else {
+            new LinkedList<>(behaviors).forEach(Behavior::step);
+        }
+    }
+
+    private void stepLayerProfiled(Layer l, Collection<Behavior> behaviors) {
+        long start = System.nanoTime();
+        if (behaviors instanceof BehaviorStorage) {
+            if (!l.render && Settings.PARALLEL_THREADS > 1) {
+                schedule(l).stepAll((BehaviorStorage) behaviors);
+            } else {
+                ((BehaviorStorage) behaviors).stepAllProfiled();
+            }
+        } else {
+            for (Behavior b : new LinkedList<>(behaviors)) {
+                long behaviorStart = System.nanoTime();
+                b.step();
+                Profiler.record(b.getClass(), System.nanoTime() - behaviorStart);
+            }
+        }
+        Profiler.record(l, System.nanoTime() - start);
+    }
+
+    private ParallelSchedule schedule(Layer l) {
+        ParallelSchedule s = schedules.get(l);
+        if (s == null) {
+            s = new ParallelSchedule();
+            schedules.put(l, s);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the total time this world has been stepped for, which is what
+     * Behavior.wakeAfter measures against.
+     *
+     * @return The world's time, in seconds.
+     */
+    public double time() {
+        return time;
+    }
+
+    /**
+     * Returns the thread stepping this world. For the default world this is
+     * Core.MAIN_THREAD, and for other worlds it is whichever thread last
+     * called step.
+     *
+     * @return The world's thread.
+     */
+    public Thread thread() {
+        return this == DEFAULT ? Core.MAIN_THREAD : thread;
+    }
+
+    public <T extends Behavior> Collection<T> track(Class<T> c) {
+        if (!trackedSets.containsKey(c)) {
+            trackedSets.put(c, track(c, new HashSet()));
+        }
+        return (Collection) trackedSets.get(c);
+    }
+
+    public <T extends Behavior, C extends Collection<T>> C track(Class<T> c, C collection) {
+        if (!trackedBehaviors.containsKey(c)) {
+            trackedBehaviors.put(c, new ArrayList());
+        }
+        trackedBehaviors.get(c).add((Collection) collection);
+        return collection;
+    }
+
+    List<Collection<Behavior>> tracked(Class<? extends Behavior> c) {
+        return trackedBehaviors.get(c);
+    }
+}
@@ -7,6 +7,7 @@ import engine.Input;
 import static engine.Layer.RENDER2D;
 import static engine.Layer.UPDATE;
 import engine.Settings;
+import engine.Task;
 import graphics.Camera;
 import graphics.Color;
 import graphics.Graphics;
@@ -33,6 +34,7 @@ public class GameOfLife {
     private static double viewZoom = 0;
     private static Vec2d viewSize = new Vec2d(16, 9);
     private static boolean running = false;
+    private static Task generation;
 
     public static void main(String[] args) {
         Core.init();
@@ -68,6 +70,7 @@ public class GameOfLife {
             }
             if (Input.keyJustPressed(GLFW_KEY_SPACE)) {
                 running = !running;
+                restartGeneration();
             }
             if (Input.keyJustPressed(GLFW_KEY_R)) {
                 for (int x = 0; x < SIZE; x++) {
@@ -79,8 +82,12 @@ public class GameOfLife {
                 }
             }
 
-            if (running) {
-                STATE = nextState();
+            // Each generation is spread over as many frames as it takes, rather than stalling one frame
+            if (running && (generation == null || generation.isDone())) {
+                boolean[][] nextState = new boolean[SIZE][SIZE];
+                generation = Task.forRange(0, SIZE, x -> nextColumn(nextState, x))
+                        .then(() -> STATE = nextState)
+                        .start();
             }
             if(Input.keyJustPressed(GLFW_KEY_H)){
                 Window.window.resizeWindow(400, 400);
@@ -106,23 +113,28 @@ public class GameOfLife {
         return STATE[mod(x, SIZE)][mod(y, SIZE)];
     }
 
-    private static boolean[][] nextState() {
-        boolean[][] nextState = new boolean[SIZE][SIZE];
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                int neighborCount = 0;
-                for (int i = -1; i <= 1; i++) {
-                    for (int j = -1; j <= 1; j++) {
-                        neighborCount += get(x + i, y + j) ? 1 : 0;
-                    }
+    private static void nextColumn(boolean[][] nextState, int x) {
+        for (int y = 0; y < SIZE; y++) {
+            int neighborCount = 0;
+            for (int i = -1; i <= 1; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    neighborCount += get(x + i, y + j) ? 1 : 0;
                 }
-                nextState[x][y] = neighborCount == 3 || (neighborCount == 4 && get(x, y));
             }
+            nextState[x][y] = neighborCount == 3 || (neighborCount == 4 && get(x, y));
+        }
+    }
+
+    // A generation that is partway through was computed from the old state, so it has to start over
+    private static void restartGeneration() {
+        if (generation != null) {
+            generation.cancel();
+            generation = null;
         }
-        return nextState;
     }
 
     private static void set(int x, int y, boolean val) {
         STATE[mod(x, SIZE)][mod(y, SIZE)] = val;
+        restartGeneration();
     }
 }
@@ -10,10 +10,8 @@ import graphics.opengl.VertexArrayObject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.function.BiFunction;
 import org.joml.Matrix4d;
 import org.joml.Vector4d;
@@ -48,18 +46,7 @@ public class VoxelRenderer<T> {
         this.params = params;
         vertexSize = params.vertexAttribSizes.stream().mapToInt(i -> i).sum();
 
-        // Define quads map
-        Map<Vec3d, List<VoxelFaceInfo>> quads = new HashMap();
-        for (Vec3d dir : DIRS) {
-            quads.put(dir, new ArrayList());
-        }
-        // Find all quads to render
-        for (Vec2d v : params.columnsToDraw) {
-            for (Vec3d dir : DIRS.subList(0, 4)) {
-                generateExposedSideFaces(floor(v.x), floor(v.y), dir, quads.get(dir));
-            }
-            generateExposedFaces(floor(v.x), floor(v.y), quads.get(new Vec3d(0, 0, -1)), quads.get(new Vec3d(0, 0, 1)));
-        }
+        Map<Vec3d, List<VoxelFaceInfo<T>>> quads = findQuads(params);
         max = new Vec3d(quads.values().stream().flatMap(List::stream).mapToInt(vfi -> vfi.x).max().getAsInt() + 1,
                 quads.values().stream().flatMap(List::stream).mapToInt(vfi -> vfi.y).max().getAsInt() + 1,
                 quads.values().stream().flatMap(List::stream).mapToInt(vfi -> vfi.z).max().getAsInt() + 1);
@@ -105,66 +92,105 @@ public class VoxelRenderer<T> {
         }
     }
 
-    private Iterator<Entry<Integer, T>> columnIterator(int x, int y) {
-        RLEColumn<T> r = params.columnAt.apply(x, y);
-        return (r == null ? new ArrayList() : r).iterator();
+    /**
+     * Finds every exposed voxel face in the columns to draw, sorted by the
+     * direction the face points in. Columns are walked with RLEColumn
+     * cursors, so this allocates nothing beyond the faces it returns.
+     *
+     * @param <T> The type of voxel.
+     * @param params The columns to draw and how to look them up.
+     * @return The faces in each direction of DIRS.
+     */
+    public static <T> Map<Vec3d, List<VoxelFaceInfo<T>>> findQuads(VoxelRendererParams<T> params) {
+        List<VoxelFaceInfo<T>>[] quads = new List[DIRS.size()];
+        Map<Vec3d, List<VoxelFaceInfo<T>>> r = new HashMap();
+        for (int i = 0; i < DIRS.size(); i++) {
+            quads[i] = new ArrayList();
+            r.put(DIRS.get(i), quads[i]);
+        }
+        RLEColumn.Cursor<T> c1 = new RLEColumn.Cursor(), c2 = new RLEColumn.Cursor();
+        for (Vec2d v : params.columnsToDraw) {
+            int x = floor(v.x), y = floor(v.y);
+            RLEColumn<T> column = params.columnAt.columnAt(x, y);
+            if (column == null) {
+                continue;
+            }
+            for (int i = 0; i < 4; i++) {
+                Vec3d dir = DIRS.get(i);
+                c1.reset(column);
+                c2.reset(params.columnAt.columnAt(x + (int) dir.x, y + (int) dir.y));
+                generateExposedSideFaces(x, y, column, c1, c2, quads[i]);
+            }
+            generateExposedFaces(x, y, column, c1.reset(column), quads[4], quads[5]);
+        }
+        return r;
     }
 
-    private void generateExposedFaces(int x, int y, List<VoxelFaceInfo> quads1, List<VoxelFaceInfo> quads2) {
-        Iterator<Entry<Integer, T>> i = columnIterator(x, y);
-        if (!i.hasNext()) {
+    private static <T> void generateExposedFaces(int x, int y, RLEColumn<T> column, RLEColumn.Cursor<T> c,
+            List<VoxelFaceInfo<T>> quads1, List<VoxelFaceInfo<T>> quads2) {
+        if (!c.next()) {
             return;
         }
-        Entry<Integer, T> e = i.next();
-        while (i.hasNext()) {
-            Entry<Integer, T> ne = i.next();
-            if (ne.getValue() == null && e.getValue() != null) {
-                quads2.add(new VoxelFaceInfo(x, y, e.getKey(), e.getValue()));
-            } else if (ne.getValue() != null && e.getValue() == null) {
-                quads1.add(new VoxelFaceInfo(x, y, e.getKey() + 1, ne.getValue()));
+        int empty = column.emptyInt();
+        int pos = c.position(), value = c.intValue();
+        while (c.next()) {
+            int nextValue = c.intValue();
+            if (nextValue == empty && value != empty) {
+                quads2.add(face(x, y, pos, value, column));
+            } else if (nextValue != empty && value == empty) {
+                quads1.add(face(x, y, pos + 1, nextValue, column));
             }
-            e = ne;
+            pos = c.position();
+            value = nextValue;
         }
-        quads2.add(new VoxelFaceInfo(x, y, e.getKey(), e.getValue()));
+        quads2.add(face(x, y, pos, value, column));
     }
 
-    private void generateExposedSideFaces(int x, int y, Vec3d dir, List<VoxelFaceInfo> quads) {
-        Iterator<Entry<Integer, T>> i1 = columnIterator(x, y);
-        Iterator<Entry<Integer, T>> i2 = columnIterator(x + (int) dir.x, y + (int) dir.y);
-        Entry<Integer, T> e1 = i1.hasNext() ? i1.next() : null;
-        Entry<Integer, T> e2 = i2.hasNext() ? i2.next() : null;
-        if (e1 == null) {
+    private static <T> void generateExposedSideFaces(int x, int y, RLEColumn<T> column, RLEColumn.Cursor<T> c1,
+            RLEColumn.Cursor<T> c2, List<VoxelFaceInfo<T>> quads) {
+        if (!c1.next()) {
             return;
         }
-        int pos = Math.min(e1.getKey(), e2 == null ? Integer.MAX_VALUE : e2.getKey());
+        int empty = column.emptyInt();
+        int pos1 = c1.position(), value1 = c1.intValue();
+        boolean has2 = c2.next();
+        // A missing neighbouring run counts as empty, and ends above everything
+        int pos2 = has2 ? c2.position() : Integer.MAX_VALUE, value2 = has2 ? c2.intValue() : empty;
+        int pos = Math.min(pos1, pos2);
         while (true) {
-            if (e2 != null && e2.getKey() < e1.getKey()) {
-                Entry<Integer, T> next_e2 = i2.hasNext() ? i2.next() : null;
-                int next_pos = Math.min(e1.getKey(), next_e2 == null ? Integer.MAX_VALUE : next_e2.getKey());
-                if (e1.getValue() != null && (next_e2 == null || next_e2.getValue() == null)) {
-                    for (int z = pos; z < next_pos; z++) {
-                        quads.add(new VoxelFaceInfo(x, y, z + 1, e1.getValue()));
+            if (has2 && pos2 < pos1) {
+                has2 = c2.next();
+                int nextPos2 = has2 ? c2.position() : Integer.MAX_VALUE, nextValue2 = has2 ? c2.intValue() : empty;
+                int nextPos = Math.min(pos1, nextPos2);
+                if (value1 != empty && nextValue2 == empty) {
+                    for (int z = pos; z < nextPos; z++) {
+                        quads.add(face(x, y, z + 1, value1, column));
                     }
                 }
-                e2 = next_e2;
-                pos = next_pos;
-                continue;
-            } else if (i1.hasNext()) {
-                Entry<Integer, T> next_e1 = i1.next();
-                int next_pos = Math.min(next_e1.getKey(), e2 == null ? Integer.MAX_VALUE : e2.getKey());
-                if (next_e1.getValue() != null && (e2 == null || e2.getValue() == null)) {
-                    for (int z = pos; z < next_pos; z++) {
-                        quads.add(new VoxelFaceInfo(x, y, z + 1, next_e1.getValue()));
+                pos2 = nextPos2;
+                value2 = nextValue2;
+                pos = nextPos;
+            } else if (c1.next()) {
+                int nextPos1 = c1.position(), nextValue1 = c1.intValue();
+                int nextPos = Math.min(nextPos1, pos2);
+                if (nextValue1 != empty && value2 == empty) {
+                    for (int z = pos; z < nextPos; z++) {
+                        quads.add(face(x, y, z + 1, nextValue1, column));
                     }
                 }
-                e1 = next_e1;
-                pos = next_pos;
-                continue;
+                pos1 = nextPos1;
+                value1 = nextValue1;
+                pos = nextPos;
+            } else {
+                break;
             }
-            break;
         }
     }
 
+    private static <T> VoxelFaceInfo<T> face(int x, int y, int z, int value, RLEColumn<T> column) {
+        return new VoxelFaceInfo(x, y, z, column.converter().fromInt(value));
+    }
+
     private boolean intersectsFrustum() {
         return true;
 //        return Camera.camera3d.getViewFrustum().testAab((float) min.x, (float) min.y, (float) min.z, (float) max.x, (float) max.y, (float) max.z);
@@ -240,12 +266,24 @@ public class VoxelRenderer<T> {
         }
     }
 
+    public interface ColumnSource<T> {
+
+        /**
+         * Returns the column at x, y, or null if there isn't one.
+         *
+         * @param x The x coordinate of the column.
+         * @param y The y coordinate of the column.
+         * @return The column, or null.
+         */
+        public RLEColumn<T> columnAt(int x, int y);
+    }
+
     public static class VoxelRendererParams<T> {
 
         public List<Vec2d> columnsToDraw;
         public Shader shader;
         public List<Integer> vertexAttribSizes;
-        public BiFunction<Integer, Integer, RLEColumn<T>> columnAt;
+        public ColumnSource<T> columnAt;
         public BiFunction<VoxelFaceInfo<T>, Vec3d, float[]> voxelFaceToData;
     }
 }
@@ -0,0 +1,56 @@
+package testing;
+
+import behaviors._3d.VelocityBehavior3d;
+import engine.ArchetypeStorage;
+import engine.Behavior;
+import engine.BehaviorList;
+import engine.Core;
+import static engine.Layer.UPDATE;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import util.math.Vec3d;
+
+public class ArchetypeBenchmark1 {
+
+    private static final int WARMUP_FRAMES = 20;
+    private static final int FRAMES = 50;
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        for (int n : new int[]{10000, 100000, 1000000}) {
+            UPDATE.behaviors = new HashSet();
+            double hashSetTime = run(n);
+            UPDATE.behaviors = new ArchetypeStorage();
+            double archetypeTime = run(n);
+            UPDATE.behaviors = new BehaviorList();
+            double listTime = run(n);
+            System.out.printf("%8d entities: HashSet %8.3f ms/frame, archetype %8.3f ms/frame, list %8.3f ms/frame%n", n, hashSetTime, archetypeTime, listTime);
+        }
+    }
+
+    private static double run(int n) {
+        List<VelocityBehavior3d> created = new ArrayList();
+        for (int i = 0; i < n; i++) {
+            VelocityBehavior3d v = new VelocityBehavior3d();
+            v.velocity = new Vec3d(i, 1, 0);
+            v.create();
+            created.add(v);
+        }
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            UPDATE.stepAll();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            UPDATE.stepAll();
+        }
+        double time = (System.nanoTime() - start) / 1e6 / FRAMES;
+        // Later sizes and storages should only step their own entities
+        Behavior.destroyAll(created);
+        UPDATE.stepAll();
+        if (!UPDATE.behaviors.isEmpty()) {
+            throw new RuntimeException("Entities from this run were left behind");
+        }
+        return time;
+    }
+}
@@ -0,0 +1,70 @@
+package testing;
+
+import behaviors._3d.AccelerationBehavior3d;
+import behaviors._3d.PositionBehavior3d;
+import engine.Behavior;
+import engine.Core;
+import static engine.Layer.UPDATE;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class BatchCreateBenchmark1 {
+
+    private static final int COUNT = 50000;
+
+    public static void main(String[] args) throws InterruptedException {
+        Core.MAIN_THREAD = Thread.currentThread();
+        Collection<PositionBehavior3d> tracked = Behavior.track(PositionBehavior3d.class);
+        Supplier<AccelerationBehavior3d> factory = Behavior.factory(AccelerationBehavior3d.class);
+        for (int run = 0; run < 5; run++) {
+            List<AccelerationBehavior3d> level = new ArrayList();
+            for (int i = 0; i < COUNT; i++) {
+                level.add(factory.get());
+            }
+            long start = System.nanoTime();
+            for (AccelerationBehavior3d a : level) {
+                a.create();
+            }
+            UPDATE.stepAll();
+            double singleCreate = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            for (AccelerationBehavior3d a : level) {
+                a.destroy();
+            }
+            UPDATE.stepAll();
+            double singleDestroy = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            Behavior.createAll(level);
+            UPDATE.stepAll();
+            double batchCreate = (System.nanoTime() - start) / 1e6;
+            if (tracked.size() != COUNT || UPDATE.behaviors.size() != 3 * COUNT) {
+                throw new RuntimeException("Batch creation missed some behaviors");
+            }
+            start = System.nanoTime();
+            Behavior.destroyAll(level);
+            UPDATE.stepAll();
+            double batchDestroy = (System.nanoTime() - start) / 1e6;
+            if (!tracked.isEmpty() || !UPDATE.behaviors.isEmpty()) {
+                throw new RuntimeException("Batch destruction missed some behaviors");
+            }
+            System.out.printf("%d roots: create %7.2f ms, createAll %7.2f ms, destroy %7.2f ms, destroyAll %7.2f ms%n",
+                    COUNT, singleCreate, batchCreate, singleDestroy, batchDestroy);
+        }
+
+        // Off the main thread, a whole batch is a single queued task
+        List<AccelerationBehavior3d> level = new ArrayList();
+        for (int i = 0; i < COUNT; i++) {
+            level.add(factory.get());
+        }
+        Thread loader = new Thread(() -> Behavior.createAll(level));
+        loader.start();
+        loader.join();
+        if (Core.queuedTasks() != 1) {
+            throw new RuntimeException("Expected createAll off the main thread to queue 1 task, but it queued " + Core.queuedTasks());
+        }
+        System.out.println("Tasks queued by a worker thread for " + COUNT + " roots: " + Core.queuedTasks());
+    }
+}
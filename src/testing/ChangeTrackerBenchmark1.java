@@ -0,0 +1,79 @@
+package testing;
+
+import behaviors.ChangeTracker;
+import behaviors._3d.PositionBehavior3d;
+import behaviors._3d.VelocityBehavior3d;
+import engine.Behavior;
+import engine.Core;
+import engine.Layer;
+import static engine.Layer.POSTUPDATE;
+import static engine.Layer.PREUPDATE;
+import static engine.Layer.UPDATE;
+import engine.Settings;
+import engine.World;
+import java.util.ArrayList;
+import java.util.List;
+import util.math.Vec3d;
+
+public class ChangeTrackerBenchmark1 {
+
+    private static final Layer[] LAYERS = {PREUPDATE, UPDATE, POSTUPDATE};
+    private static final int FRAMES = 100;
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        Settings.HEADLESS = true;
+        ChangeTracker<PositionBehavior3d> tracker = ChangeTracker.track(PositionBehavior3d.class);
+        for (int n : new int[]{10000, 100000, 1000000}) {
+            List<VelocityBehavior3d> entities = new ArrayList();
+            List<PositionBehavior3d> positions = new ArrayList();
+            for (int i = 0; i < n; i++) {
+                VelocityBehavior3d v = new VelocityBehavior3d();
+                // Only 10% of entities move; the rest are still reassigned an equal position every frame
+                v.velocity = i % 10 == 0 ? new Vec3d(1, 2, 3) : new Vec3d(0, 0, 0);
+                entities.add(v);
+                positions.add(v.position);
+            }
+            Behavior.createAll(entities);
+            // A full frame sets dt, and the first detection reports everything as added
+            World.defaultWorld().step(1 / 60.);
+            if (tracker.added().size() != n) {
+                throw new RuntimeException("Expected " + n + " added behaviors, found " + tracker.added().size());
+            }
+
+            long stepTime = 0, detectTime = 0, fullScanTime = 0;
+            double sink = 0;
+            for (int f = 0; f < FRAMES; f++) {
+                // Moving behaviors mark themselves changed through setPosition, which this includes
+                long start = System.nanoTime();
+                for (Layer l : LAYERS) {
+                    l.stepAll();
+                }
+                stepTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                ChangeTracker.DETECT.stepAll();
+                detectTime += System.nanoTime() - start;
+                if (tracker.changed().size() != n / 10 || !tracker.added().isEmpty()) {
+                    throw new RuntimeException("Expected " + n / 10 + " changed behaviors, found " + tracker.changed().size());
+                }
+                // What a system that can't tell what moved has to do every frame, over the same kind of list
+                start = System.nanoTime();
+                for (int i = 0; i < positions.size(); i++) {
+                    sink += positions.get(i).position.x;
+                }
+                fullScanTime += System.nanoTime() - start;
+                for (PositionBehavior3d p : tracker.changed()) {
+                    sink -= p.position.x;
+                }
+            }
+            System.out.printf("%8d entities: step %7.3f ms/frame, detect %7.3f ms/frame for %d changes, visiting every entity %7.3f ms/frame%s%n",
+                    n, stepTime / 1e6 / FRAMES, detectTime / 1e6 / FRAMES, n / 10, fullScanTime / 1e6 / FRAMES, sink == 0 ? "" : " ");
+
+            Behavior.destroyAll(entities);
+            World.defaultWorld().step(1 / 60.);
+            if (tracker.removed().size() != n) {
+                throw new RuntimeException("Expected " + n + " removed behaviors, found " + tracker.removed().size());
+            }
+        }
+    }
+}
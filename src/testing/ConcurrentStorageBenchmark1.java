@@ -0,0 +1,148 @@
+package testing;
+
+import graphics.voxels.VoxelRenderer;
+import graphics.voxels.VoxelRenderer.VoxelRendererParams;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import util.math.Vec2d;
+import util.rlestorage.IntConverter.IntegerConverter;
+import util.rlestorage.RLEColumn;
+import util.rlestorage.RLEConcurrentStorage;
+import util.rlestorage.RLEMapStorage;
+import util.rlestorage.RLEStorage;
+
+public class ConcurrentStorageBenchmark1 {
+
+    private static final int SIZE = 128;
+    private static final int HEIGHT = 128;
+    private static final int MESHERS = 2;
+    private static final int EDITORS = 2;
+    private static final long RUN_NANOS = 3_000_000_000L;
+    private static final int OPS = 2000000;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int i = 0; i < 2; i++) {
+            singleThreaded("RLEMapStorage", new RLEMapStorage(new IntegerConverter()));
+            singleThreaded("RLEConcurrentStorage", new RLEConcurrentStorage(new IntegerConverter()));
+        }
+
+        RLEConcurrentStorage<Integer> storage = new RLEConcurrentStorage(new IntegerConverter());
+        fill(storage);
+        List<Vec2d> columns = new ArrayList();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                columns.add(new Vec2d(x, y));
+            }
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong meshes = new AtomicLong(), faces = new AtomicLong(), edits = new AtomicLong(), snapshots = new AtomicLong();
+        List<Thread> threads = new ArrayList();
+        List<Throwable> failures = new ArrayList();
+        for (int t = 0; t < MESHERS; t++) {
+            threads.add(new Thread(() -> {
+                VoxelRendererParams<Integer> params = new VoxelRendererParams();
+                params.columnsToDraw = columns;
+                params.columnAt = storage::columnAt;
+                RLEColumn.Cursor<Integer> cursor = new RLEColumn.Cursor();
+                while (running.get()) {
+                    faces.addAndGet(VoxelRenderer.findQuads(params).values().stream().mapToInt(List::size).sum());
+                    meshes.incrementAndGet();
+                    // Every snapshot must be a whole, well formed column, never one caught halfway through an edit
+                    for (Vec2d v : columns) {
+                        checkWellFormed(cursor.reset(storage.columnAt((int) v.x, (int) v.y)));
+                        snapshots.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (int t = 0; t < EDITORS; t++) {
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                while (running.get()) {
+                    // Dig and fill small boxes, so both editors often hit the same columns
+                    int x0 = random.nextInt(SIZE - 4), y0 = random.nextInt(SIZE - 4), z = random.nextInt(HEIGHT);
+                    Integer value = random.nextBoolean() ? null : random.nextInt(200);
+                    for (int x = x0; x < x0 + 4; x++) {
+                        for (int y = y0; y < y0 + 4; y++) {
+                            storage.setRange(x, y, z, z + 3, value);
+                            edits.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.setUncaughtExceptionHandler((thread, e) -> {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+                running.set(false);
+            });
+            t.start();
+        }
+        Thread.sleep(RUN_NANOS / 1_000_000);
+        running.set(false);
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new RuntimeException(failures.get(0));
+        }
+        double seconds = RUN_NANOS / 1e9;
+        System.out.printf("%d meshing threads and %d editing threads for %.0f s: %.1f meshes/s (%d faces each), %.2f M edits/s, %d snapshots checked%n",
+                MESHERS, EDITORS, seconds, meshes.get() / seconds, faces.get() / Math.max(1, meshes.get()),
+                edits.get() / seconds / 1e6, snapshots.get());
+    }
+
+    private static void checkWellFormed(RLEColumn.Cursor<Integer> cursor) {
+        boolean first = true;
+        int prevPos = 0, prevValue = 0;
+        boolean empty = false;
+        while (cursor.next()) {
+            if (!first && (cursor.position() <= prevPos || cursor.intValue() == prevValue)) {
+                throw new RuntimeException("Read a torn column");
+            }
+            first = false;
+            prevPos = cursor.position();
+            prevValue = cursor.intValue();
+            empty = cursor.isEmpty();
+        }
+        if (empty) {
+            throw new RuntimeException("Read a column ending in an empty run");
+        }
+    }
+
+    private static void fill(RLEStorage<Integer> storage) {
+        Random random = new Random(0);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                int h = HEIGHT / 2 + random.nextInt(HEIGHT / 4);
+                for (int z = 0; z < h; z += 16) {
+                    storage.setRange(x, y, z, Math.min(z + 15, h), z / 16);
+                }
+            }
+        }
+    }
+
+    private static void singleThreaded(String name, RLEStorage<Integer> storage) {
+        fill(storage);
+        Random random = new Random(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            int z = random.nextInt(HEIGHT);
+            storage.setRange(random.nextInt(SIZE), random.nextInt(SIZE), z, z + 3, random.nextBoolean() ? null : random.nextInt(200));
+        }
+        double editTime = (System.nanoTime() - start) / 1e9;
+        long sum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            sum += storage.getInt(random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(HEIGHT));
+        }
+        double readTime = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-21s one thread: edit %5.0f ns, getInt %5.0f ns%s%n",
+                name, editTime * 1e9 / OPS, readTime * 1e9 / OPS, sum == 0 ? " " : "");
+    }
+}
@@ -0,0 +1,101 @@
+package testing;
+
+import behaviors._3d.AccelerationBehavior3d;
+import behaviors._3d.PositionBehavior3d;
+import behaviors._3d.VelocityBehavior3d;
+import engine.Behavior;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import util.math.Vec3d;
+
+public class FactoryBenchmark1 {
+
+    private static final int COUNT = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        Supplier<AccelerationBehavior3d> factory = Behavior.factory(AccelerationBehavior3d.class);
+        Constructor<ReflectedAcceleration> constructor = ReflectedAcceleration.class.getConstructor();
+        for (int run = 0; run < 3; run++) {
+            // Reflection at every level of the require chain, like before factories were generated
+            long start = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                check(constructor.newInstance());
+            }
+            double reflectionTime = (System.nanoTime() - start) / (double) COUNT;
+
+            start = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                check(factory.get());
+            }
+            double factoryTime = (System.nanoTime() - start) / (double) COUNT;
+
+            System.out.printf("Acceleration -> Velocity -> Position: Constructor.newInstance %7.1f ns, factory %7.1f ns%n", reflectionTime, factoryTime);
+        }
+
+        // Build roots on several threads at once to check the require graphs stay separate
+        List<Thread> threads = new ArrayList();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < COUNT / 8; i++) {
+                    check(factory.get());
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        System.out.println("Constructed " + COUNT + " roots across 8 threads");
+    }
+
+    private static <T extends Behavior> Supplier<T> reflected(Class<T> c) {
+        return () -> {
+            try {
+                return c.getConstructor().newInstance();
+            } catch (ReflectiveOperationException ex) {
+                throw new RuntimeException(ex);
+            }
+        };
+    }
+
+    private static void check(ReflectedAcceleration a) {
+        if (!a.isRoot() || a.velocity.getRoot() != a || a.velocity.position != a.get(ReflectedPosition.class) || a.getSubBehaviors().size() != 3) {
+            throw new RuntimeException("Behavior graph was built incorrectly");
+        }
+    }
+
+    private static void check(AccelerationBehavior3d a) {
+        if (!a.isRoot() || a.velocity.getRoot() != a || a.velocity.position != a.get(PositionBehavior3d.class)
+                || a.get(VelocityBehavior3d.class) != a.velocity || a.getSubBehaviors().size() != 3) {
+            throw new RuntimeException("Behavior graph was built incorrectly");
+        }
+    }
+
+    // The same require chain as AccelerationBehavior3d, built with reflection at every level like before factories were generated
+    public static class ReflectedAcceleration extends Behavior {
+
+        private static final Supplier<ReflectedVelocity> VELOCITY = reflected(ReflectedVelocity.class);
+
+        public final ReflectedVelocity velocity = require(ReflectedVelocity.class, VELOCITY);
+
+        public Vec3d acceleration = new Vec3d(0, 0, 0);
+    }
+
+    public static class ReflectedVelocity extends Behavior {
+
+        private static final Supplier<ReflectedPosition> POSITION = reflected(ReflectedPosition.class);
+
+        public final ReflectedPosition position = require(ReflectedPosition.class, POSITION);
+
+        public Vec3d velocity = new Vec3d(0, 0, 0);
+    }
+
+    public static class ReflectedPosition extends Behavior {
+
+        public Vec3d position = new Vec3d(0, 0, 0);
+    }
+}
@@ -0,0 +1,35 @@
+package testing;
+
+import behaviors._3d.VelocityBehavior3d;
+import engine.Core;
+import static engine.Layer.UPDATE;
+import engine.Settings;
+import util.Mutable;
+import util.math.Vec3d;
+
+public class HeadlessTest1 {
+
+    public static void main(String[] args) {
+        Settings.HEADLESS = true;
+        Settings.MIN_FRAME_TIME = 0;
+        Core.init();
+
+        for (int i = 0; i < 10000; i++) {
+            VelocityBehavior3d v = new VelocityBehavior3d();
+            v.velocity = new Vec3d(i, 1, 0);
+            v.create();
+        }
+        new Thread(() -> Core.onMainThread(() -> System.out.println("Ran a task posted from another thread"))).start();
+
+        Mutable<Integer> frames = new Mutable(0);
+        long start = System.nanoTime();
+        UPDATE.onStep(() -> {
+            frames.o++;
+            if (frames.o == 1000) {
+                System.out.printf("Stepped %d frames in %.3f ms/frame%n", frames.o, (System.nanoTime() - start) / 1e6 / frames.o);
+                Core.stopGame();
+            }
+        });
+        Core.run();
+    }
+}
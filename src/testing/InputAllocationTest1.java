@@ -0,0 +1,71 @@
+package testing;
+
+import engine.Input;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_W;
+import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
+import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
+
+public class InputAllocationTest1 {
+
+    // Roughly a 1000 Hz mouse at 60 frames per second
+    private static final int EVENTS_PER_FRAME = 20;
+
+    private static MethodHandle cursorPos, key, scroll, nextFrame, processEvents;
+
+    public static void main(String[] args) throws Throwable {
+        // The input handlers are package-private, since normally only GLFW and replays call them
+        cursorPos = handle("cursorPos", double.class, double.class);
+        key = handle("key", int.class, int.class);
+        scroll = handle("scroll", double.class, double.class);
+        nextFrame = handle("nextFrame");
+        processEvents = handle("processEvents");
+
+        for (int i = 0; i < 20000; i++) {
+            frame(i);
+        }
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        int frames = 10000;
+        long allocated = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long overhead = -mx.getThreadAllocatedBytes(id) + mx.getThreadAllocatedBytes(id);
+            long before = mx.getThreadAllocatedBytes(id);
+            for (int i = 0; i < frames; i++) {
+                frame(i);
+            }
+            allocated = Math.min(allocated, mx.getThreadAllocatedBytes(id) - before - overhead);
+        }
+        System.out.println("Allocated " + allocated + " bytes over " + frames * (EVENTS_PER_FRAME + 2) + " input events");
+        if (allocated > 0) {
+            throw new RuntimeException("Handling input events allocated memory");
+        }
+    }
+
+    private static void frame(int i) throws Throwable {
+        nextFrame.invokeExact();
+        for (int j = 0; j < EVENTS_PER_FRAME; j++) {
+            cursorPos.invokeExact(j / 20., i % 7 / 7.);
+        }
+        key.invokeExact(GLFW_KEY_W, i % 2 == 0 ? GLFW_PRESS : GLFW_RELEASE);
+        scroll.invokeExact(0., 1.);
+        processEvents.invokeExact();
+        int count = 0;
+        for (Input.Event e : Input.events()) {
+            count += e.kind;
+        }
+        if (count != Input.KEY_IN + EVENTS_PER_FRAME * Input.MOUSE_IN + Input.MOUSE_WHEEL_IN
+                || Input.keyJustPressed(GLFW_KEY_W) != (i % 2 == 0) || Input.mouseWheel() != 1) {
+            throw new RuntimeException("Input state is wrong");
+        }
+    }
+
+    private static MethodHandle handle(String name, Class<?>... parameters) throws ReflectiveOperationException {
+        Method m = Input.class.getDeclaredMethod(name, parameters);
+        m.setAccessible(true);
+        return MethodHandles.lookup().unreflect(m);
+    }
+}
@@ -0,0 +1,41 @@
+package testing;
+
+import behaviors.LifetimeBehavior;
+import engine.Behavior;
+import engine.Core;
+import engine.World;
+import java.util.Collection;
+
+public class LifetimeTest1 {
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        World world = World.defaultWorld();
+        LifetimeBehavior[] l = new LifetimeBehavior[3];
+        Collection<LifetimeBehavior>[] tracked = new Collection[1];
+        world.run(() -> {
+            tracked[0] = Behavior.track(LifetimeBehavior.class);
+            for (int i = 0; i < l.length; i++) {
+                l[i] = new LifetimeBehavior();
+                l[i].lifetime = 1;
+                l[i].create();
+            }
+        });
+        world.step(1. / 60);
+        // Lifetimes written after create still have to take effect
+        l[1].lifetime = .5;
+        l[2].lifetime = 5;
+        for (int i = 0; i < 90; i++) {
+            world.step(1. / 60);
+        }
+        for (int i = 0; i < l.length; i++) {
+            if (tracked[0].contains(l[i]) != (i == 2)) {
+                throw new RuntimeException("Behavior " + i + " should " + (i == 2 ? "still be alive" : "have been destroyed"));
+            }
+        }
+        if (Math.abs(l[2].lifetime - 3.5) > 1e-6) {
+            throw new RuntimeException("Expected 3.5 seconds of lifetime to be left, but found " + l[2].lifetime);
+        }
+        System.out.println("Lifetimes set before and after create both took effect");
+    }
+}
@@ -0,0 +1,94 @@
+package testing;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import util.MPSCQueue;
+
+public class MainThreadQueueBenchmark1 {
+
+    private static final int TASKS_PER_PRODUCER = 200000;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int i = 0; i < 2; i++) {
+            for (int producers : new int[]{1, 2, 4, 8, 16, 32}) {
+                double locked = run(producers, new LockedQueue());
+                double lockFree = run(producers, new LockFreeQueue());
+                if (i == 1) {
+                    System.out.printf("%2d producers: synchronized LinkedList %8.2f Mtasks/s, MPSCQueue %8.2f Mtasks/s%n", producers, locked, lockFree);
+                }
+            }
+        }
+    }
+
+    private static double run(int producers, TaskQueue queue) throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
+        Runnable task = counter::incrementAndGet;
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < TASKS_PER_PRODUCER; j++) {
+                    queue.offer(task);
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        int total = producers * TASKS_PER_PRODUCER;
+        int ran = 0;
+        while (ran < total) {
+            Runnable r = queue.poll();
+            if (r != null) {
+                r.run();
+                ran++;
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return total / ((System.nanoTime() - start) / 1e3);
+    }
+
+    private interface TaskQueue {
+
+        void offer(Runnable r);
+
+        Runnable poll();
+    }
+
+    private static class LockedQueue implements TaskQueue {
+
+        private final Queue<Runnable> queue = new LinkedList();
+
+        @Override
+        public void offer(Runnable r) {
+            synchronized (queue) {
+                queue.add(r);
+            }
+        }
+
+        @Override
+        public Runnable poll() {
+            synchronized (queue) {
+                return queue.poll();
+            }
+        }
+    }
+
+    private static class LockFreeQueue implements TaskQueue {
+
+        private final MPSCQueue<Runnable> queue = new MPSCQueue();
+
+        @Override
+        public void offer(Runnable r) {
+            queue.offer(r);
+        }
+
+        @Override
+        public Runnable poll() {
+            return queue.poll();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package testing;
+
+import behaviors.LifetimeBehavior;
+import behaviors._3d.AccelerationBehavior3d;
+import engine.Behavior;
+import engine.Core;
+import engine.World;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import util.math.Vec3d;
+
+public class MultiWorldTest1 {
+
+    private static final int WORLDS = 16;
+    private static final int BEHAVIORS = 2000;
+    private static final int FRAMES = 600;
+
+    public static void main(String[] args) throws Exception {
+        Core.MAIN_THREAD = Thread.currentThread();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Double>> results = new ArrayList();
+        long start = System.nanoTime();
+        for (int i = 0; i < WORLDS; i++) {
+            // Each world runs the same match, but at a different frame rate
+            double frameTime = 1. / (30 + 30 * (i % 2));
+            int frames = (int) Math.round(FRAMES / 60. / frameTime);
+            results.add(executor.submit(() -> runMatch(new World(), frameTime, frames)));
+        }
+        double expected = runMatch(World.defaultWorld(), 1. / 60, FRAMES);
+        for (Future<Double> f : results) {
+            double result = f.get();
+            System.out.println("World finished with checksum " + result);
+            if (Math.abs(result - expected) > 1e-6 * Math.abs(expected)) {
+                throw new RuntimeException("A world's result does not match the default world's result of " + expected);
+            }
+        }
+        executor.shutdown();
+        System.out.printf("Stepped %d worlds of %d behaviors for %d simulated seconds in %.1f ms%n",
+                WORLDS + 1, 3 * BEHAVIORS, FRAMES / 60, (System.nanoTime() - start) / 1e6);
+    }
+
+    private static double runMatch(World world, double frameTime, int frames) {
+        Collection<AccelerationBehavior3d>[] tracked = new Collection[1];
+        world.run(() -> {
+            tracked[0] = Behavior.track(AccelerationBehavior3d.class);
+            List<Behavior> match = new ArrayList();
+            for (int i = 0; i < BEHAVIORS; i++) {
+                AccelerationBehavior3d a = new AccelerationBehavior3d();
+                a.acceleration = new Vec3d(0, 0, -10);
+                a.velocity.velocity = new Vec3d(i, 0, 100);
+                // Half of the behaviors expire partway through, using the world's own dt
+                a.require(LifetimeBehavior.class).lifetime = i % 2 == 0 ? 1e9 : 5;
+                match.add(a);
+            }
+            Behavior.createAll(match);
+        });
+        for (int i = 0; i < frames; i++) {
+            world.step(frameTime);
+        }
+        if (tracked[0].size() != BEHAVIORS / 2) {
+            throw new RuntimeException("Expected " + BEHAVIORS / 2 + " behaviors to be left, but found " + tracked[0].size());
+        }
+        double sum = 0;
+        for (AccelerationBehavior3d a : tracked[0]) {
+            sum += a.velocity.velocity.z + a.velocity.velocity.x;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,35 @@
+package testing;
+
+import behaviors._3d.AccelerationBehavior3d;
+import engine.Core;
+import static engine.Layer.UPDATE;
+import engine.Settings;
+import util.math.Vec3d;
+
+public class ParallelBenchmark1 {
+
+    private static final int ENTITIES = 200000;
+    private static final int WARMUP_FRAMES = 20;
+    private static final int FRAMES = 50;
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        for (int i = 0; i < ENTITIES; i++) {
+            AccelerationBehavior3d a = new AccelerationBehavior3d();
+            a.acceleration = new Vec3d(0, 0, -9.8);
+            a.velocity.velocity = new Vec3d(i, 1, 0);
+            a.create();
+        }
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            Settings.PARALLEL_THREADS = threads;
+            for (int i = 0; i < WARMUP_FRAMES; i++) {
+                UPDATE.stepAll();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < FRAMES; i++) {
+                UPDATE.stepAll();
+            }
+            System.out.printf("%2d threads: %8.3f ms/frame%n", threads, (System.nanoTime() - start) / 1e6 / FRAMES);
+        }
+    }
+}
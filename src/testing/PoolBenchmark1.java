@@ -0,0 +1,81 @@
+package testing;
+
+import behaviors._3d.PreviousPositionBehavior3d;
+import behaviors._3d.VelocityBehavior3d;
+import engine.Behavior;
+import engine.BehaviorPool;
+import engine.Core;
+import engine.Layer;
+import static engine.Layer.POSTUPDATE;
+import static engine.Layer.PREUPDATE;
+import static engine.Layer.UPDATE;
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+import util.math.Vec3d;
+
+public class PoolBenchmark1 {
+
+    private static final int SPAWNS_PER_SECOND = 10000;
+    private static final int FRAMES_PER_SECOND = 60;
+    private static final int LIFETIME_FRAMES = 60;
+    private static final int FRAMES = 3000;
+
+    private static final Layer[] LAYERS = {PREUPDATE, UPDATE, POSTUPDATE};
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        BehaviorPool<Particle> pool = new BehaviorPool<>(Particle::new);
+        for (int i = 0; i < 2; i++) {
+            run("new      ", Particle::new);
+            run("pooled   ", pool::acquire);
+        }
+    }
+
+    private static void run(String name, Supplier<Particle> spawner) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        int perFrame = SPAWNS_PER_SECOND / FRAMES_PER_SECOND;
+        long bytes = mx.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        for (int f = 0; f < FRAMES; f++) {
+            for (int i = 0; i < perFrame; i++) {
+                Particle p = spawner.get();
+                p.framesLeft = LIFETIME_FRAMES;
+                p.velocity.velocity = new Vec3d(i, f, 1);
+                p.create();
+            }
+            for (Layer l : LAYERS) {
+                l.stepAll();
+            }
+        }
+        double time = (System.nanoTime() - start) / 1e6 / FRAMES;
+        double allocated = (double) (mx.getThreadAllocatedBytes(id) - bytes) / FRAMES;
+        // Let every remaining particle expire before the next run
+        for (int f = 0; f <= LIFETIME_FRAMES; f++) {
+            for (Layer l : LAYERS) {
+                l.stepAll();
+            }
+        }
+        System.out.printf("%s %d spawns/s: %8.3f ms/frame, %10.0f bytes/frame%n", name, SPAWNS_PER_SECOND, time, allocated);
+    }
+
+    public static class Particle extends Behavior {
+
+        public final VelocityBehavior3d velocity = require(VelocityBehavior3d.class);
+        public final PreviousPositionBehavior3d prevPos = require(PreviousPositionBehavior3d.class);
+
+        public int framesLeft;
+
+        @Override
+        public void resetInner() {
+            framesLeft = 0;
+        }
+
+        @Override
+        public void step() {
+            if (--framesLeft < 0) {
+                destroy();
+            }
+        }
+    }
+}
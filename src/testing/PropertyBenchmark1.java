@@ -0,0 +1,56 @@
+package testing;
+
+import engine.DoubleProperty;
+import engine.Queryable.Property;
+import java.lang.management.ManagementFactory;
+
+public class PropertyBenchmark1 {
+
+    private static final int WARMUP = 5000000;
+    private static final int ITERATIONS = 20000000;
+
+    public static void main(String[] args) {
+        Property<Double> boxed = new Property(1.);
+        boxed.addModifier(x -> x * 1.5);
+        boxed.addModifier(1, x -> x + 2);
+        boxed.addModifier(-1, x -> x * .5);
+
+        DoubleProperty primitive = new DoubleProperty(1);
+        primitive.addModifier(x -> x * 1.5);
+        primitive.addModifier(1, x -> x + 2);
+        primitive.addModifier(-1, x -> x * .5);
+
+        if (boxed.get() != primitive.get()) {
+            throw new RuntimeException("Properties disagree: " + boxed.get() + " " + primitive.get());
+        }
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        double sink = 0;
+        for (int run = 0; run < 2; run++) {
+            int iterations = run == 0 ? WARMUP : ITERATIONS;
+
+            long bytes = mx.getThreadAllocatedBytes(id);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += boxed.get();
+            }
+            double boxedTime = (double) (System.nanoTime() - start) / iterations;
+            double boxedBytes = (double) (mx.getThreadAllocatedBytes(id) - bytes) / iterations;
+
+            bytes = mx.getThreadAllocatedBytes(id);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += primitive.get();
+            }
+            double primitiveTime = (double) (System.nanoTime() - start) / iterations;
+            double primitiveBytes = (double) (mx.getThreadAllocatedBytes(id) - bytes) / iterations;
+
+            if (run == 1) {
+                System.out.printf("Property<Double>: %6.2f ns/get, %6.2f bytes/get%n", boxedTime, boxedBytes);
+                System.out.printf("DoubleProperty:   %6.2f ns/get, %6.2f bytes/get%n", primitiveTime, primitiveBytes);
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+}
@@ -0,0 +1,87 @@
+package testing;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import util.Noise;
+import util.rlestorage.IntConverter.IntegerConverter;
+import util.rlestorage.RLEArrayStorage;
+import util.rlestorage.RLEChunkedStorage;
+import util.rlestorage.RLEMapStorage;
+import util.rlestorage.RLEStorage;
+
+public class RLEChunkedBenchmark1 {
+
+    private static final int SIZE = 2048;
+    private static final int LOOKUPS = 5000000;
+
+    public static void main(String[] args) {
+        Noise noise = new Noise(new Random(0));
+        int[] heights = new int[SIZE * SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                heights[x * SIZE + y] = (int) (64 + 48 * noise.fbm2d(x, y, 4, 1 / 256.));
+            }
+        }
+        for (int i = 0; i < 2; i++) {
+            run("RLEArrayStorage", () -> new RLEArrayStorage(SIZE, new IntegerConverter()), heights);
+            run("RLEMapStorage", () -> new RLEMapStorage(new IntegerConverter()), heights);
+            run("RLEChunkedStorage", () -> new RLEChunkedStorage(new IntegerConverter()), heights);
+        }
+
+        // A world much bigger than the loaded chunks, streamed through in rows of chunks
+        RLEChunkedStorage<Integer> bounded = new RLEChunkedStorage(new IntegerConverter());
+        bounded.maxChunks = 4096;
+        int[] evicted = new int[1];
+        long start = System.nanoTime();
+        for (int x = 0; x < 4 * SIZE; x++) {
+            for (int y = 0; y < 4 * SIZE; y++) {
+                int h = heights[(x % SIZE) * SIZE + y % SIZE];
+                bounded.setRange(x, y, h - 3, h, 1);
+                bounded.setRangeInfinite(x, y, h - 4, 0);
+            }
+        }
+        double time = (System.nanoTime() - start) / 1e9;
+        long memory = usedMemory();
+        System.out.printf("Filled %dx%d columns with %d of at most %d chunks loaded in %.1f s, %.0f MB used%n",
+                4 * SIZE, 4 * SIZE, bounded.chunkCount(), bounded.maxChunks, time, memory / 1e6);
+    }
+
+    private static void run(String name, Supplier<RLEStorage<Integer>> newStorage, int[] heights) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        RLEStorage<Integer> storage = newStorage.get();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                int h = heights[x * SIZE + y];
+                // Three layers of terrain under each column's height
+                storage.setRange(x, y, h - 3, h, 1);
+                storage.setRangeInfinite(x, y, h - 4, 0);
+            }
+        }
+        double fill = (System.nanoTime() - start) / 1e9;
+        long memory = usedMemory() - before;
+
+        Random random = new Random(1);
+        long sum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            // Random walks, like the lookups made while meshing or raycasting
+            int x = random.nextInt(SIZE - 16) + (i & 15), y = random.nextInt(SIZE);
+            Integer v = storage.get(x, y, heights[x * SIZE + y] - (i & 7));
+            sum += v == null ? 0 : v + 1;
+        }
+        double lookup = (System.nanoTime() - start) / 1e9;
+        if (sum == 0) {
+            throw new RuntimeException("Lookups found nothing");
+        }
+        System.out.printf("%-18s fill %6.0f ns/column, get %5.0f ns, %5.0f MB (%.0f B/column)%n",
+                name, fill * 1e9 / SIZE / SIZE, lookup * 1e9 / LOOKUPS, memory / 1e6, (double) memory / SIZE / SIZE);
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+}
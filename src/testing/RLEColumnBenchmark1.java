@@ -0,0 +1,156 @@
+package testing;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import util.rlestorage.IntConverter.IntegerConverter;
+import util.rlestorage.RLEArrayStorage;
+
+public class RLEColumnBenchmark1 {
+
+    private static final int HEIGHT = 4096;
+    private static final int OPS = 200000;
+
+    public static void main(String[] args) {
+        checkAgainstTreeMap();
+        for (int i = 0; i < 3; i++) {
+            for (int runs : new int[]{1, 16, 256}) {
+                run(runs, false);
+                run(runs, true);
+            }
+        }
+    }
+
+    // Random edits, including negative positions, must read back the same as the old TreeMap version
+    private static void checkAgainstTreeMap() {
+        Random random = new Random(0);
+        for (int column = 0; column < 200; column++) {
+            RLEArrayStorage<Integer> storage = new RLEArrayStorage(1, new IntegerConverter());
+            TreeMapColumn reference = new TreeMapColumn();
+            for (int op = 0; op < 300; op++) {
+                int z = random.nextInt(200) - 100;
+                Integer t = random.nextInt(4) == 0 ? null : random.nextInt(3);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        storage.set(0, 0, z, t);
+                        reference.set(z, t);
+                        break;
+                    case 1:
+                        int zMax = z + random.nextInt(20);
+                        storage.setRange(0, 0, z, zMax, t);
+                        reference.setRange(z, zMax, t);
+                        break;
+                    default:
+                        storage.setRangeInfinite(0, 0, z, t);
+                        reference.setRangeInfinite(z, t);
+                }
+                for (int check = -120; check < 140; check++) {
+                    if (!Objects.equals(storage.get(0, 0, check), reference.get(check))) {
+                        throw new RuntimeException("Column differs from the TreeMap version at " + check);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void run(int runs, boolean ranges) {
+        Random random = new Random(runs);
+        RLEArrayStorage<Integer> storage = new RLEArrayStorage(1, new IntegerConverter());
+        TreeMapColumn reference = new TreeMapColumn();
+        for (int r = 0; r < runs; r++) {
+            int zMin = r * HEIGHT / runs, zMax = (r + 1) * HEIGHT / runs - 1;
+            storage.setRange(0, 0, zMin, zMax, r % 2);
+            reference.setRange(zMin, zMax, r % 2);
+        }
+        int[] z = new int[OPS], length = new int[OPS];
+        Integer[] t = new Integer[OPS], undo = new Integer[OPS];
+        for (int i = 0; i < OPS; i++) {
+            length[i] = ranges ? random.nextInt(HEIGHT / runs) : 0;
+            // Each edit stays inside one run and is then undone, so the column keeps the same number of runs
+            int run = random.nextInt(runs);
+            z[i] = run * HEIGHT / runs + random.nextInt(HEIGHT / runs - length[i]);
+            t[i] = 2;
+            undo[i] = run % 2;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            storage.setRange(0, 0, z[i], z[i] + length[i], t[i]);
+            storage.setRange(0, 0, z[i], z[i] + length[i], undo[i]);
+        }
+        double spliced = (System.nanoTime() - start) / 1e9 / 2;
+
+        int referenceOps = OPS / 20;
+        start = System.nanoTime();
+        for (int i = 0; i < referenceOps; i++) {
+            reference.setRange(z[i], z[i] + length[i], t[i]);
+            reference.setRange(z[i], z[i] + length[i], undo[i]);
+        }
+        double rebuilt = (System.nanoTime() - start) / 1e9 / 2;
+
+        System.out.printf("%3d runs, %-12s spliced %8.0f ns/op, TreeMap rebuild %8.0f ns/op%n",
+                runs, ranges ? "range fills:" : "single sets:", spliced * 1e9 / OPS, rebuilt * 1e9 / referenceOps);
+    }
+
+    // The old implementation, which rebuilt a TreeMap from the whole column on every edit
+    private static class TreeMapColumn {
+
+        private final IntegerConverter ic = new IntegerConverter();
+        private long[] data = {};
+
+        private Integer blockType(long d) {
+            return ic.fromInt((int) (d >>> 32));
+        }
+
+        private TreeMap<Integer, Integer> dataTree() {
+            TreeMap<Integer, Integer> r = new TreeMap();
+            for (long d : data) {
+                r.put((int) d, blockType(d));
+            }
+            return r;
+        }
+
+        Integer get(int pos) {
+            Map.Entry<Integer, Integer> e = dataTree().ceilingEntry(pos);
+            return e == null ? null : e.getValue();
+        }
+
+        void set(int pos, Integer t) {
+            setRange(pos, pos, t);
+        }
+
+        void setRange(int posMin, int posMax, Integer t) {
+            TreeMap<Integer, Integer> dataTree = dataTree();
+            dataTree.put(posMin - 1, get(posMin - 1));
+            dataTree.subMap(posMin, posMax).clear();
+            dataTree.put(posMax, t);
+            setDataTree(dataTree);
+        }
+
+        void setRangeInfinite(int posMax, Integer t) {
+            TreeMap<Integer, Integer> dataTree = dataTree();
+            dataTree.headMap(posMax).clear();
+            dataTree.put(posMax, t);
+            setDataTree(dataTree);
+        }
+
+        private void setDataTree(TreeMap<Integer, Integer> dataTree) {
+            Iterator<Map.Entry<Integer, Integer>> iterator = dataTree.descendingMap().entrySet().iterator();
+            Integer prev = null;
+            while (iterator.hasNext()) {
+                Integer t = iterator.next().getValue();
+                if (t == prev) {
+                    iterator.remove();
+                }
+                prev = t;
+            }
+            data = new long[dataTree.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> e : dataTree.entrySet()) {
+                data[i++] = (e.getKey() & 0xFFFFFFFFL) | ((long) ic.toInt(e.getValue()) << 32);
+            }
+        }
+    }
+}
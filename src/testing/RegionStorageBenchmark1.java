@@ -0,0 +1,122 @@
+package testing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import util.Noise;
+import util.rlestorage.IntConverter.IntegerConverter;
+import util.rlestorage.RLEColumn;
+import util.rlestorage.RLERegionStorage;
+
+public class RegionStorageBenchmark1 {
+
+    private static final int SIZE = 4096;
+    private static final int MAX_CHUNKS = 4096;
+    private static final int LOOKUPS = 2000000;
+
+    public static void main(String[] args) throws IOException {
+        Path folder = Files.createTempDirectory("regions");
+        Noise noise = new Noise(new Random(0));
+        int[] heights = new int[SIZE * SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                heights[x * SIZE + y] = (int) (64 + 48 * noise.fbm2d(x, y, 4, 1 / 256.));
+            }
+        }
+
+        // Chunks are saved as they are evicted, so only a quarter of the world is ever in memory
+        long start = System.nanoTime();
+        RLERegionStorage<Integer> storage = new RLERegionStorage(folder, new IntegerConverter());
+        storage.maxChunks = MAX_CHUNKS;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                int h = heights[x * SIZE + y];
+                storage.setRange(x, y, h - 3, h, 1);
+                storage.setRangeInfinite(x, y, h - 4, 0);
+            }
+        }
+        int minZ = storage.minZ(), maxZ = storage.maxZ();
+        storage.close();
+        double saveTime = (System.nanoTime() - start) / 1e9;
+        long bytes = folderSize(folder);
+        System.out.printf("Generated and saved %dx%d columns in %.2f s (%.0f MB on disk, %.1f M columns/s)%n",
+                SIZE, SIZE, saveTime, bytes / 1e6, SIZE * SIZE / saveTime / 1e6);
+
+        // Editing a few columns only rewrites those columns
+        start = System.nanoTime();
+        storage = new RLERegionStorage(folder, new IntegerConverter());
+        if (storage.minZ() != minZ || storage.maxZ() != maxZ) {
+            throw new RuntimeException("The z bounds changed after reopening the regions");
+        }
+        for (int i = 0; i < 1000; i++) {
+            storage.set(i * 4, i * 4, 500, 2);
+        }
+        storage.close();
+        System.out.printf("Edited and saved 1000 scattered columns in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        for (int i = 0; i < 2; i++) {
+            storage = new RLERegionStorage(folder, new IntegerConverter());
+            storage.maxChunks = MAX_CHUNKS;
+            start = System.nanoTime();
+            long runs = 0;
+            for (int x = 0; x < SIZE; x++) {
+                for (int y = 0; y < SIZE; y++) {
+                    RLEColumn<Integer> c = storage.columnAt(x, y);
+                    runs += c.isEmpty() ? 0 : 1;
+                }
+            }
+            double loadTime = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Loaded %d columns in %.2f s (%.1f M columns/s, %.0f MB/s)%n",
+                    runs, loadTime, SIZE * SIZE / loadTime / 1e6, bytes / loadTime / 1e6);
+            storage.close();
+
+            // Reads straight from the mapped files, without loading any chunks
+            storage = new RLERegionStorage(folder, new IntegerConverter());
+            if (storage.maxZ() != 500 || storage.minZ() != minZ) {
+                throw new RuntimeException("The z bounds of the saved chunks were lost");
+            }
+            if (storage.get(400, 400, 500) != 2 || storage.get(400, 400, 499) != null) {
+                throw new RuntimeException("The edited columns weren't saved");
+            }
+            int h400 = heights[400 * SIZE + 400];
+            if (!storage.rangeEquals(400, 400, h400 - 3, h400, 1) || storage.rangeEquals(400, 400, h400 - 4, h400, 1)
+                    || !storage.rangeEquals(400, 400, h400 + 1, 499, null) || storage.chunkCount() != 0) {
+                throw new RuntimeException("rangeEquals read the wrong runs, or loaded a chunk to read them");
+            }
+            Random random = new Random(i);
+            start = System.nanoTime();
+            for (int j = 0; j < LOOKUPS; j++) {
+                int x = random.nextInt(SIZE), y = random.nextInt(SIZE), h = heights[x * SIZE + y];
+                Integer top = storage.get(x, y, h), below = storage.get(x, y, h - 4), above = storage.get(x, y, h + 1);
+                if (top == null || top != 1 || below == null || below != 0 || above != null) {
+                    throw new RuntimeException("Read back the wrong voxels at " + x + ", " + y);
+                }
+            }
+            System.out.printf("Mapped get without loading: %.0f ns, %d chunks loaded%n",
+                    (System.nanoTime() - start) / 3. / LOOKUPS, storage.chunkCount());
+
+            // Evicting the chunk with the highest voxel and loading it again must not lose its bounds
+            storage.maxChunks = 1;
+            storage.columnAt(400, 400);
+            storage.columnAt(SIZE - 1, SIZE - 1);
+            storage.columnAt(400, 400);
+            if (storage.maxZ() != 500 || storage.minZ() != minZ) {
+                throw new RuntimeException("The z bounds were lost after reloading an evicted chunk");
+            }
+            storage.close();
+        }
+
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static long folderSize(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+}
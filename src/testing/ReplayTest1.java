@@ -0,0 +1,44 @@
+package testing;
+
+import behaviors._3d.AccelerationBehavior3d;
+import engine.Core;
+import static engine.Layer.UPDATE;
+import engine.Replay;
+import engine.Settings;
+import util.math.Vec3d;
+
+public class ReplayTest1 {
+
+    // Run once with "record <file>" and then with "play <file>"; both runs should print the same position
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: ReplayTest1 record|play <file>");
+            return;
+        }
+        if (args[0].equals("record")) {
+            Settings.RECORD_REPLAY = args[1];
+            Settings.HEADLESS = true;
+            Settings.MIN_FRAME_TIME = .002;
+        } else {
+            Settings.PLAY_REPLAY = args[1];
+        }
+        Core.init();
+
+        AccelerationBehavior3d a = new AccelerationBehavior3d();
+        a.acceleration = new Vec3d(0, 0, -9.8);
+        a.velocity.velocity = new Vec3d(1, 2, 30);
+        a.create();
+
+        long start = System.nanoTime();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.printf("%d frames in %.1f ms, final position %s%n", Replay.frames(),
+                    (System.nanoTime() - start) / 1e6, a.velocity.position.position);
+        }));
+        UPDATE.onStep(() -> {
+            if (Replay.recording() && Replay.frames() == 500) {
+                Core.stopGame();
+            }
+        });
+        Core.run();
+    }
+}
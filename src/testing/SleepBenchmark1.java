@@ -0,0 +1,83 @@
+package testing;
+
+import behaviors._3d.PositionBehavior3d;
+import engine.Behavior;
+import engine.Core;
+import engine.Settings;
+import engine.World;
+import java.util.ArrayList;
+import java.util.List;
+import util.math.Vec3d;
+
+public class SleepBenchmark1 {
+
+    private static final int ENTITIES = 200000;
+    private static final double FRAME_TIME = 1 / 60.;
+    private static final int FRAMES = 600;
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        Settings.HEADLESS = true;
+        for (int i = 0; i < 3; i++) {
+            run(false);
+            run(true);
+        }
+    }
+
+    private static void run(boolean sleep) {
+        World world = World.defaultWorld();
+        List<Npc> npcs = new ArrayList();
+        for (int i = 0; i < ENTITIES; i++) {
+            Npc n = new Npc();
+            n.sleep = sleep;
+            // 20% of entities think every frame, and the rest every 0.5 to 2.5 seconds
+            n.thinkInterval = i % 5 == 0 ? 0 : .5 + (i % 41) * .05;
+            n.nextThink = world.time();
+            npcs.add(n);
+        }
+        Behavior.createAll(npcs);
+        world.step(FRAME_TIME);
+
+        long start = System.nanoTime();
+        for (int f = 0; f < FRAMES; f++) {
+            world.step(FRAME_TIME);
+        }
+        double time = (System.nanoTime() - start) / 1e6 / FRAMES;
+        long thinks = 0;
+        for (Npc n : npcs) {
+            thinks += n.thinks;
+        }
+        Behavior.destroyAll(npcs);
+        world.step(FRAME_TIME);
+        System.out.printf("%s: %8.3f ms/frame, %5.1f%% of entities think per frame%n",
+                sleep ? "wakeAfter" : "polling  ", time, 100. * thinks / (FRAMES + 1) / ENTITIES);
+    }
+
+    public static class Npc extends Behavior {
+
+        public final PositionBehavior3d position = require(PositionBehavior3d.class);
+
+        public boolean sleep;
+        public double thinkInterval;
+        public double nextThink;
+        public int thinks;
+
+        @Override
+        public void step() {
+            double time = World.current().time();
+            if (!sleep && time < nextThink - 1e-9) {
+                // Polling entities still pay for a step every frame while idle
+                return;
+            }
+            thinks++;
+            position.position = position.position.add(new Vec3d(1, 0, 0));
+            if (thinkInterval > 0) {
+                if (sleep) {
+                    wakeAfter(thinkInterval);
+                } else {
+                    nextThink = time + thinkInterval;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package testing;
+
+import behaviors.LifetimeBehavior;
+import behaviors._3d.AccelerationBehavior3d;
+import engine.Behavior;
+import engine.Core;
+import static engine.Layer.UPDATE;
+import engine.Snapshot;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import util.math.Vec3d;
+
+public class SnapshotBenchmark1 {
+
+    public static void main(String[] args) throws IOException {
+        Core.MAIN_THREAD = Thread.currentThread();
+        Collection<AccelerationBehavior3d> tracked = Behavior.track(AccelerationBehavior3d.class);
+        // Scenes almost always have onStep behaviors, which can't be saved and must not break loading
+        int[] steps = new int[1];
+        UPDATE.onStep(() -> steps[0]++);
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        for (int n : new int[]{10000, 100000, 1000000}) {
+            long start = System.nanoTime();
+            Random random = new Random(n);
+            List<Behavior> level = new ArrayList(n);
+            for (int i = 0; i < n; i++) {
+                AccelerationBehavior3d a = new AccelerationBehavior3d();
+                a.acceleration = new Vec3d(0, 0, -random.nextDouble());
+                a.velocity.velocity = new Vec3d(random.nextDouble(), random.nextDouble(), 0);
+                a.velocity.position.position = new Vec3d(random.nextGaussian(), random.nextGaussian(), i);
+                a.require(LifetimeBehavior.class).lifetime = 10 + i;
+                level.add(a);
+            }
+            Behavior.createAll(level);
+            UPDATE.stepAll();
+            double setupTime = (System.nanoTime() - start) / 1e6;
+            double checksum = checksum(tracked);
+
+            start = System.nanoTime();
+            int saved = Snapshot.save(new FileOutputStream(file));
+            double saveTime = (System.nanoTime() - start) / 1e6;
+
+            Behavior.destroyAll(level);
+            UPDATE.stepAll();
+            level = null;
+            System.gc();
+
+            start = System.nanoTime();
+            int loaded = Snapshot.load(new FileInputStream(file));
+            UPDATE.stepAll();
+            double loadTime = (System.nanoTime() - start) / 1e6;
+
+            if (saved != n || loaded != n || tracked.size() != n || Math.abs(checksum(tracked) - checksum) > 1e-6 * Math.abs(checksum)) {
+                throw new RuntimeException("Loaded snapshot does not match what was saved");
+            }
+            if (steps[0] == 0) {
+                throw new RuntimeException("The onStep behavior was never stepped");
+            }
+            System.out.printf("%8d roots: setup code %8.1f ms, save %8.1f ms, load %8.1f ms, %6.1f bytes/root%n",
+                    n, setupTime, saveTime, loadTime, file.length() / (double) n);
+
+            Behavior.destroyAll(new ArrayList(tracked));
+            UPDATE.stepAll();
+        }
+    }
+
+    // Core.dt() is 0 outside of Core.run, so stepping doesn't change any of these
+    private static double checksum(Collection<AccelerationBehavior3d> tracked) {
+        double sum = 0;
+        for (AccelerationBehavior3d a : tracked) {
+            sum += a.acceleration.z + a.velocity.position.position.z + a.get(LifetimeBehavior.class).lifetime * 1e-9;
+        }
+        return sum;
+    }
+}
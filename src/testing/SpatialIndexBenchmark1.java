@@ -0,0 +1,77 @@
+package testing;
+
+import behaviors.SpatialIndex;
+import behaviors._3d.PositionBehavior3d;
+import engine.Core;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import util.math.Vec3d;
+
+public class SpatialIndexBenchmark1 {
+
+    private static final double WORLD_SIZE = 1000;
+    private static final double RADIUS = 10;
+    private static final int QUERIES = 1000;
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        Random random = new Random(0);
+        for (int n : new int[]{1000, 10000, 100000, 1000000}) {
+            SpatialIndex<PositionBehavior3d> index = new SpatialIndex(RADIUS);
+            List<PositionBehavior3d> all = new ArrayList();
+            for (int i = 0; i < n; i++) {
+                PositionBehavior3d p = new PositionBehavior3d();
+                p.position = new Vec3d(random.nextDouble(), random.nextDouble(), random.nextDouble()).mul(WORLD_SIZE);
+                index.add(p);
+                all.add(p);
+            }
+            List<Vec3d> centers = new ArrayList();
+            for (int i = 0; i < QUERIES; i++) {
+                centers.add(new Vec3d(random.nextDouble(), random.nextDouble(), random.nextDouble()).mul(WORLD_SIZE));
+            }
+
+            long found = 0;
+            long start = System.nanoTime();
+            for (Vec3d c : centers) {
+                found += index.inRadius(c, RADIUS).size();
+            }
+            double indexTime = (System.nanoTime() - start) / 1e3 / QUERIES;
+
+            start = System.nanoTime();
+            for (Vec3d c : centers) {
+                for (PositionBehavior3d p : all) {
+                    if (p.position.sub(c).lengthSquared() <= RADIUS * RADIUS) {
+                        found--;
+                    }
+                }
+            }
+            double scanTime = (System.nanoTime() - start) / 1e3 / QUERIES;
+
+            start = System.nanoTime();
+            for (Vec3d c : centers) {
+                index.nearest(c, 8);
+            }
+            double nearestTime = (System.nanoTime() - start) / 1e3 / QUERIES;
+
+            if (found != 0) {
+                throw new RuntimeException("Index and linear scan disagree");
+            }
+            // Huge queries scan the occupied cells instead of looping over every cell in range
+            start = System.nanoTime();
+            Vec3d far = new Vec3d(1e300, 1e300, 1e300);
+            if (index.inBox(far.mul(-1), far).size() != n || index.inRadius(new Vec3d(0, 0, 0), 1e300).size() != n) {
+                throw new RuntimeException("A query covering everything missed some entities");
+            }
+            double hugeTime = (System.nanoTime() - start) / 2e3;
+            List<PositionBehavior3d> nearFar = index.nearest(far, 10);
+            if (nearFar.size() != 10 || new HashSet(nearFar).size() != 10) {
+                throw new RuntimeException("Searching from past the edge of the grid found duplicate or missing entities");
+            }
+
+            System.out.printf("%8d entities: radius query %10.2f us, linear scan %10.2f us, 8-nearest %10.2f us, query covering everything %10.2f us%n",
+                    n, indexTime, scanTime, nearestTime, hugeTime);
+        }
+    }
+}
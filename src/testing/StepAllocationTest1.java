@@ -0,0 +1,70 @@
+package testing;
+
+import engine.Behavior;
+import engine.Core;
+import engine.Layer;
+import static engine.Layer.POSTRENDER;
+import static engine.Layer.POSTUPDATE;
+import static engine.Layer.PREUPDATE;
+import static engine.Layer.RENDER2D;
+import static engine.Layer.RENDER3D;
+import static engine.Layer.UPDATE;
+import java.lang.management.ManagementFactory;
+
+public class StepAllocationTest1 {
+
+    private static final Layer[] LAYERS = {PREUPDATE, UPDATE, POSTUPDATE, RENDER3D, RENDER2D, POSTRENDER};
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        for (int i = 0; i < 10000; i++) {
+            new CounterBehavior().create();
+            new PostUpdateCounterBehavior().create();
+        }
+        for (int i = 0; i < 2000; i++) {
+            stepFrame();
+        }
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        int frames = 1000;
+        long allocated = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long overhead = -mx.getThreadAllocatedBytes(id) + mx.getThreadAllocatedBytes(id);
+            long before = mx.getThreadAllocatedBytes(id);
+            for (int i = 0; i < frames; i++) {
+                stepFrame();
+            }
+            allocated = Math.min(allocated, mx.getThreadAllocatedBytes(id) - before - overhead);
+        }
+
+        System.out.println("Allocated " + allocated + " bytes over " + frames + " frames (" + (double) allocated / frames + " bytes/frame)");
+        if (allocated > 0) {
+            throw new RuntimeException("Stepping a steady set of behaviors allocated memory");
+        }
+    }
+
+    private static void stepFrame() {
+        for (Layer l : LAYERS) {
+            l.stepAll();
+        }
+    }
+
+    public static class CounterBehavior extends Behavior {
+
+        public int steps;
+
+        @Override
+        public void step() {
+            steps++;
+        }
+    }
+
+    public static class PostUpdateCounterBehavior extends CounterBehavior {
+
+        @Override
+        public Layer layer() {
+            return POSTUPDATE;
+        }
+    }
+}
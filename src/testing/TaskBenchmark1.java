@@ -0,0 +1,102 @@
+package testing;
+
+import engine.Core;
+import static engine.Layer.UPDATE;
+import engine.Settings;
+import engine.Task;
+import engine.World;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TaskBenchmark1 {
+
+    private static final int SIZE = 1500;
+    private static final int GENERATIONS = 10;
+    private static final double FRAME_TIME = 1 / 60.;
+
+    private static boolean[][] state;
+    private static int generations;
+    private static Task generation;
+
+    public static void main(String[] args) {
+        Core.MAIN_THREAD = Thread.currentThread();
+        Settings.HEADLESS = true;
+        UPDATE.onStep(() -> {
+            // Stand in for the rest of the frame's work
+            long end = System.nanoTime() + 2_000_000;
+            while (System.nanoTime() < end) {
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            boolean[][] direct = run(false);
+            boolean[][] spread = run(true);
+            if (!Arrays.deepEquals(direct, spread)) {
+                throw new RuntimeException("Spreading the generations over frames changed the result");
+            }
+        }
+    }
+
+    private static boolean[][] run(boolean useTasks) {
+        Random random = new Random(0);
+        state = new boolean[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                state[x][y] = random.nextInt(4) == 0;
+            }
+        }
+        generations = 0;
+        generation = null;
+        // A low priority task that always has more to do, which only gets the time the generations leave over
+        int[] background = new int[1];
+        Task backgroundTask = Task.of(() -> ++background[0] > 0);
+        backgroundTask.priority = -1;
+        backgroundTask.start();
+
+        int frames = 0;
+        long maxFrame = 0, totalTime = 0;
+        while (generations < GENERATIONS) {
+            long start = System.nanoTime();
+            if (useTasks) {
+                if (generation == null || generation.isDone()) {
+                    boolean[][] next = new boolean[SIZE][SIZE];
+                    generation = Task.forRange(0, SIZE, x -> nextColumn(next, x))
+                            .then(() -> {
+                                state = next;
+                                generations++;
+                            })
+                            .start();
+                }
+            } else if (frames % 10 == 0) {
+                boolean[][] next = new boolean[SIZE][SIZE];
+                for (int x = 0; x < SIZE; x++) {
+                    nextColumn(next, x);
+                }
+                state = next;
+                generations++;
+            }
+            World.defaultWorld().step(FRAME_TIME);
+            long frame = System.nanoTime() - start;
+            maxFrame = Math.max(maxFrame, frame);
+            totalTime += frame;
+            frames++;
+        }
+        backgroundTask.cancel();
+        World.defaultWorld().step(FRAME_TIME);
+        System.out.printf("%-22s %d generations in %3d frames, mean frame %6.2f ms, worst frame %6.2f ms, %d background steps%n",
+                useTasks ? "Spread over frames:" : "All in one frame:", GENERATIONS, frames,
+                totalTime / 1e6 / frames, maxFrame / 1e6, background[0]);
+        return state;
+    }
+
+    private static void nextColumn(boolean[][] next, int x) {
+        for (int y = 0; y < SIZE; y++) {
+            int neighborCount = 0;
+            for (int i = -1; i <= 1; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    neighborCount += state[Math.floorMod(x + i, SIZE)][Math.floorMod(y + j, SIZE)] ? 1 : 0;
+                }
+            }
+            next[x][y] = neighborCount == 3 || (neighborCount == 4 && state[x][y]);
+        }
+    }
+}
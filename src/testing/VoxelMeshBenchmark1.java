@@ -0,0 +1,190 @@
+package testing;
+
+import graphics.voxels.VoxelRenderer;
+import graphics.voxels.VoxelRenderer.VoxelFaceInfo;
+import graphics.voxels.VoxelRenderer.VoxelRendererParams;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import util.Noise;
+import util.math.Vec2d;
+import util.math.Vec3d;
+import util.rlestorage.IntConverter.IntegerConverter;
+import util.rlestorage.RLEArrayStorage;
+import util.rlestorage.RLEColumn;
+
+public class VoxelMeshBenchmark1 {
+
+    private static final int SIZE = 256;
+    private static final int LOOKUPS = 10000000;
+
+    private static final com.sun.management.ThreadMXBean MX = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        // A 256^3 model of layered terrain with air pockets, so columns have tens of runs
+        RLEArrayStorage<Integer> model = new RLEArrayStorage(SIZE, new IntegerConverter());
+        Noise noise = new Noise(new Random(0));
+        Random random = new Random(0);
+        List<Vec2d> columns = new ArrayList();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                int height = (int) (SIZE / 2 + SIZE / 3 * noise.fbm2d(x, y, 4, 1 / 64.));
+                for (int z = 0; z <= height; z += 8) {
+                    model.setRange(x, y, z, Math.min(z + 7, height), 1 + (z / 8 * 37 + x / 32) % 250);
+                }
+                for (int i = 0; i < 4; i++) {
+                    int z = random.nextInt(Math.max(1, height));
+                    model.setRange(x, y, z, z + random.nextInt(3), null);
+                }
+                columns.add(new Vec2d(x, y));
+            }
+        }
+        VoxelRendererParams<Integer> params = new VoxelRendererParams();
+        params.columnsToDraw = columns;
+        params.columnAt = model::columnAt;
+
+        for (int i = 0; i < 5; i++) {
+            long allocated = allocated();
+            long start = System.nanoTime();
+            Map<Vec3d, List<VoxelFaceInfo<Integer>>> entries = IteratorMesher.findQuads(params);
+            double entryTime = (System.nanoTime() - start) / 1e9;
+            long entryBytes = allocated() - allocated;
+
+            allocated = allocated();
+            start = System.nanoTime();
+            Map<Vec3d, List<VoxelFaceInfo<Integer>>> cursors = VoxelRenderer.findQuads(params);
+            double cursorTime = (System.nanoTime() - start) / 1e9;
+            long cursorBytes = allocated() - allocated;
+
+            long faces = 0;
+            for (Vec3d dir : VoxelRenderer.DIRS) {
+                List<VoxelFaceInfo<Integer>> a = entries.get(dir), b = cursors.get(dir);
+                if (a.size() != b.size()) {
+                    throw new RuntimeException("Meshes differ in size facing " + dir);
+                }
+                for (int j = 0; j < a.size(); j++) {
+                    VoxelFaceInfo<Integer> f1 = a.get(j), f2 = b.get(j);
+                    if (f1.x != f2.x || f1.y != f2.y || f1.z != f2.z || !f1.voxel.equals(f2.voxel)) {
+                        throw new RuntimeException("Meshes differ facing " + dir + " at face " + j);
+                    }
+                }
+                faces += a.size();
+            }
+            // Every face costs a VoxelFaceInfo, and sometimes an Integer, whichever way the mesh is found
+            System.out.printf("%d faces: Entry iterators %6.0f ms, %5.0f MB allocated; cursors %6.0f ms, %5.0f MB allocated%n",
+                    faces, entryTime * 1e3, entryBytes / 1e6, cursorTime * 1e3, cursorBytes / 1e6);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            Random r = new Random(i);
+            long sum = 0, allocated = allocated(), start = System.nanoTime();
+            for (int j = 0; j < LOOKUPS; j++) {
+                Integer v = model.get(r.nextInt(SIZE), r.nextInt(SIZE), r.nextInt(SIZE));
+                sum += v == null ? 0 : v;
+            }
+            double getTime = (System.nanoTime() - start) / 1e9;
+            long getBytes = allocated() - allocated;
+
+            r = new Random(i);
+            allocated = allocated();
+            start = System.nanoTime();
+            for (int j = 0; j < LOOKUPS; j++) {
+                sum -= Math.max(0, model.getInt(r.nextInt(SIZE), r.nextInt(SIZE), r.nextInt(SIZE)) - 1);
+            }
+            double getIntTime = (System.nanoTime() - start) / 1e9;
+            long getIntBytes = allocated() - allocated;
+            if (sum != 0) {
+                throw new RuntimeException("get and getInt disagree");
+            }
+            System.out.printf("Random lookups: get %5.1f ns, %5.1f B each; getInt %5.1f ns, %5.1f B each%n",
+                    getTime * 1e9 / LOOKUPS, (double) getBytes / LOOKUPS, getIntTime * 1e9 / LOOKUPS, (double) getIntBytes / LOOKUPS);
+        }
+    }
+
+    private static long allocated() {
+        return MX.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // The mesher as it was, walking each column through its Entry iterator
+    private static class IteratorMesher {
+
+        static Map<Vec3d, List<VoxelFaceInfo<Integer>>> findQuads(VoxelRendererParams<Integer> params) {
+            Map<Vec3d, List<VoxelFaceInfo<Integer>>> quads = new HashMap();
+            for (Vec3d dir : VoxelRenderer.DIRS) {
+                quads.put(dir, new ArrayList());
+            }
+            for (Vec2d v : params.columnsToDraw) {
+                for (Vec3d dir : VoxelRenderer.DIRS.subList(0, 4)) {
+                    generateExposedSideFaces(params, (int) v.x, (int) v.y, dir, quads.get(dir));
+                }
+                generateExposedFaces(params, (int) v.x, (int) v.y, quads.get(new Vec3d(0, 0, -1)), quads.get(new Vec3d(0, 0, 1)));
+            }
+            return quads;
+        }
+
+        static Iterator<Entry<Integer, Integer>> columnIterator(VoxelRendererParams<Integer> params, int x, int y) {
+            RLEColumn<Integer> r = params.columnAt.columnAt(x, y);
+            return (r == null ? new ArrayList() : r).iterator();
+        }
+
+        static void generateExposedFaces(VoxelRendererParams<Integer> params, int x, int y, List<VoxelFaceInfo<Integer>> quads1, List<VoxelFaceInfo<Integer>> quads2) {
+            Iterator<Entry<Integer, Integer>> i = columnIterator(params, x, y);
+            if (!i.hasNext()) {
+                return;
+            }
+            Entry<Integer, Integer> e = i.next();
+            while (i.hasNext()) {
+                Entry<Integer, Integer> ne = i.next();
+                if (ne.getValue() == null && e.getValue() != null) {
+                    quads2.add(new VoxelFaceInfo(x, y, e.getKey(), e.getValue()));
+                } else if (ne.getValue() != null && e.getValue() == null) {
+                    quads1.add(new VoxelFaceInfo(x, y, e.getKey() + 1, ne.getValue()));
+                }
+                e = ne;
+            }
+            quads2.add(new VoxelFaceInfo(x, y, e.getKey(), e.getValue()));
+        }
+
+        static void generateExposedSideFaces(VoxelRendererParams<Integer> params, int x, int y, Vec3d dir, List<VoxelFaceInfo<Integer>> quads) {
+            Iterator<Entry<Integer, Integer>> i1 = columnIterator(params, x, y);
+            Iterator<Entry<Integer, Integer>> i2 = columnIterator(params, x + (int) dir.x, y + (int) dir.y);
+            Entry<Integer, Integer> e1 = i1.hasNext() ? i1.next() : null;
+            Entry<Integer, Integer> e2 = i2.hasNext() ? i2.next() : null;
+            if (e1 == null) {
+                return;
+            }
+            int pos = Math.min(e1.getKey(), e2 == null ? Integer.MAX_VALUE : e2.getKey());
+            while (true) {
+                if (e2 != null && e2.getKey() < e1.getKey()) {
+                    Entry<Integer, Integer> next_e2 = i2.hasNext() ? i2.next() : null;
+                    int next_pos = Math.min(e1.getKey(), next_e2 == null ? Integer.MAX_VALUE : next_e2.getKey());
+                    if (e1.getValue() != null && (next_e2 == null || next_e2.getValue() == null)) {
+                        for (int z = pos; z < next_pos; z++) {
+                            quads.add(new VoxelFaceInfo(x, y, z + 1, e1.getValue()));
+                        }
+                    }
+                    e2 = next_e2;
+                    pos = next_pos;
+                    continue;
+                } else if (i1.hasNext()) {
+                    Entry<Integer, Integer> next_e1 = i1.next();
+                    int next_pos = Math.min(next_e1.getKey(), e2 == null ? Integer.MAX_VALUE : e2.getKey());
+                    if (next_e1.getValue() != null && (e2 == null || e2.getValue() == null)) {
+                        for (int z = pos; z < next_pos; z++) {
+                            quads.add(new VoxelFaceInfo(x, y, z + 1, next_e1.getValue()));
+                        }
+                    }
+                    e1 = next_e1;
+                    pos = next_pos;
+                    continue;
+                }
+                break;
+            }
+        }
+    }
+}
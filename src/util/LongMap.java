@@ -0,0 +1,153 @@
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map from primitive longs to objects, using open addressing so that
+ * lookups neither box their keys nor allocate entries.
+ *
+ * @param <V> The type of value stored in the map.
+ */
+public class LongMap<V> {
+
+    private long[] keys = new long[16];
+    private Object[] values = new Object[16];
+    private int size;
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            if (values[i] == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongMap cannot store null values");
+        }
+        if (2 * (size + 1) > keys.length) {
+            resize(2 * keys.length);
+        }
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            if (values[i] == null) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return null;
+            }
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+    }
+
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (true) {
+            if (values[i] == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        V old = (V) values[i];
+        // Shift later entries of the probe sequence back into the gap
+        int gap = i;
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+        size--;
+        return old;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new Iterator<V>() {
+                    int pos = -1;
+                    int next = advance(0);
+
+                    private int advance(int from) {
+                        while (from < values.length && values[from] == null) {
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public V next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        pos = next;
+                        next = advance(next + 1);
+                        return (V) values[pos];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An unbounded lock-free queue for many producer threads and a single
+ * consumer thread. Producers only perform one atomic swap each, so they never
+ * block each other or the consumer.
+ *
+ * @param <T> The type of element stored in the queue.
+ */
+public class MPSCQueue<T> {
+
+    private final AtomicReference<Node<T>> tail;
+    private Node<T> head;
+    private final LongAdder offered = new LongAdder();
+    // Only the consumer writes this, but size() reads it from any thread
+    private volatile long polled;
+    private long lastPolledTime;
+
+    public MPSCQueue() {
+        head = new Node(null);
+        tail = new AtomicReference(head);
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the most recently polled element
+     * was offered. Only valid on the consumer thread.
+     *
+     * @return The time the last polled element was offered.
+     */
+    public long lastPolledTime() {
+        return lastPolledTime;
+    }
+
+    public void offer(T t) {
+        if (t == null) {
+            throw new NullPointerException();
+        }
+        Node<T> n = new Node(t);
+        Node<T> prev = tail.getAndSet(n);
+        prev.next = n;
+        offered.increment();
+    }
+
+    /**
+     * Removes and returns the oldest element, or null if the queue is empty.
+     * Must only be called from the consumer thread.
+     *
+     * @return The oldest element in the queue, or null.
+     */
+    public T poll() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T t = next.value;
+        next.value = null;
+        head = next;
+        polled++;
+        lastPolledTime = next.time;
+        return t;
+    }
+
+    public long size() {
+        return Math.max(0, offered.sum() - polled);
+    }
+
+    private static class Node<T> {
+
+        private T value;
+        private volatile Node<T> next;
+        private final long time = System.nanoTime();
+
+        private Node(T value) {
+            this.value = value;
+        }
+    }
+}
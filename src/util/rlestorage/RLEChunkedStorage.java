@@ -0,0 +1,375 @@
+package util.rlestorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import util.LongMap;
+
+/**
+ * An unbounded storage that groups columns into square chunks of CHUNK_SIZE
+ * by CHUNK_SIZE, kept in a LongMap keyed by chunk coordinates. Chunks are
+ * created the first time one of their columns is asked for, and columns
+ * within a chunk are created the first time they are asked for. Reads of
+ * positions that were never written don't create anything. Once more than
+ * maxChunks chunks are loaded, the least recently used ones are evicted.
+ * The z bounds of evicted chunks are kept, so minZ and maxZ still count them.
+ *
+ * @param <T> The type of voxel stored.
+ */
+public class RLEChunkedStorage<T> extends RLEStorage<T> {
+
+    public static final int CHUNK_BITS = 5;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    static final long EMPTY_BOUNDS = packBounds(Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+    /**
+     * The number of chunks to keep loaded. When a new chunk would go over
+     * this, the least recently used eighth of them are evicted.
+     */
+    public int maxChunks = Integer.MAX_VALUE;
+
+    final IntConverter<T> ic;
+    final int nullCode;
+    private final LongMap<Chunk<T>> chunks = new LongMap();
+    private long accessCount;
+    // Neighbouring lookups usually land in the same chunk
+    private Chunk<T> lastChunk;
+    // The z bounds of evicted chunks that hold any runs, packed by packBounds
+    private final LongMap<Long> evictedBounds = new LongMap();
+    // The combined bounds of the loaded and of the evicted chunks, rebuilt from the per-chunk bounds when they may have shrunk
+    private long loadedBounds = EMPTY_BOUNDS, evictedBoundsTotal = EMPTY_BOUNDS;
+    private boolean shouldRecomputeLoaded, shouldRecomputeEvicted;
+
+    public RLEChunkedStorage(IntConverter<T> ic) {
+        this.ic = ic;
+        nullCode = ic.toInt(null);
+    }
+
+    @Override
+    public Stream<RLEColumn<T>> allColumns() {
+        return chunks.values().stream().flatMap(c -> Arrays.stream(c.columns)).filter(Objects::nonNull);
+    }
+
+    public Stream<Chunk<T>> allChunks() {
+        return chunks.values().stream();
+    }
+
+    /**
+     * Returns the chunk containing a column, loading or creating it if
+     * needed.
+     *
+     * @param x The x coordinate of the column.
+     * @param y The y coordinate of the column.
+     * @return The chunk.
+     */
+    public Chunk<T> chunkAt(int x, int y) {
+        Chunk<T> c = chunkIfLoaded(x, y);
+        if (c == null) {
+            int cx = x >> CHUNK_BITS, cy = y >> CHUNK_BITS;
+            if (chunks.size() >= maxChunks) {
+                evict(chunks.size() - maxChunks + Math.max(1, maxChunks / 8));
+            }
+            c = createChunk(cx, cy);
+            chunks.put(chunkKey(cx, cy), c);
+            loadedBounds = union(loadedBounds, c.bounds());
+            Long b = evictedBounds.remove(chunkKey(cx, cy));
+            if (b != null && touches(b, evictedBoundsTotal)) {
+                shouldRecomputeEvicted = true;
+            }
+            c.lastAccess = ++accessCount;
+            lastChunk = c;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the chunk containing a column, or null if it isn't loaded.
+     *
+     * @param x The x coordinate of the column.
+     * @param y The y coordinate of the column.
+     * @return The chunk, or null.
+     */
+    public Chunk<T> chunkIfLoaded(int x, int y) {
+        int cx = x >> CHUNK_BITS, cy = y >> CHUNK_BITS;
+        Chunk<T> c = lastChunk;
+        if (c == null || c.cx != cx || c.cy != cy) {
+            c = chunks.get(chunkKey(cx, cy));
+            if (c == null) {
+                return null;
+            }
+            lastChunk = c;
+        }
+        c.lastAccess = ++accessCount;
+        return c;
+    }
+
+    boolean isLoaded(int cx, int cy) {
+        return chunks.get(chunkKey(cx, cy)) != null;
+    }
+
+    static long chunkKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    public int chunkCount() {
+        return chunks.size();
+    }
+
+    @Override
+    public RLEColumn<T> columnAt(int x, int y) {
+        Chunk<T> c = chunkAt(x, y);
+        int i = columnIndex(x, y);
+        if (c.columns[i] == null) {
+            c.columns[i] = new RLEColumn(x, y, ic);
+        }
+        return c.columns[i];
+    }
+
+    /**
+     * Returns a column, or null if it was never written or its chunk isn't
+     * loaded.
+     *
+     * @param x The x coordinate of the column.
+     * @param y The y coordinate of the column.
+     * @return The column, or null.
+     */
+    public RLEColumn<T> columnIfLoaded(int x, int y) {
+        Chunk<T> c = chunkIfLoaded(x, y);
+        return c == null ? null : c.columns[columnIndex(x, y)];
+    }
+
+    static int columnIndex(int x, int y) {
+        return ((x & (CHUNK_SIZE - 1)) << CHUNK_BITS) | (y & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Creates the chunk at the given chunk coordinates the first time it is
+     * needed, or after it was evicted. Override this to load chunks from
+     * somewhere instead of starting them empty.
+     *
+     * @param cx The chunk's x coordinate.
+     * @param cy The chunk's y coordinate.
+     * @return The new chunk.
+     */
+    protected Chunk<T> createChunk(int cx, int cy) {
+        return new Chunk(cx, cy);
+    }
+
+    /**
+     * Evicts the least recently used chunks.
+     *
+     * @param count The number of chunks to evict.
+     */
+    public void evict(int count) {
+        List<Chunk<T>> coldest = new ArrayList(chunks.values());
+        coldest.sort(Comparator.comparingLong(c -> c.lastAccess));
+        for (int i = 0; i < count && i < coldest.size(); i++) {
+            evict(coldest.get(i));
+        }
+    }
+
+    public void evict(Chunk<T> c) {
+        if (chunks.remove(chunkKey(c.cx, c.cy)) != null) {
+            if (lastChunk == c) {
+                lastChunk = null;
+            }
+            long b = c.bounds();
+            if (b != EMPTY_BOUNDS) {
+                evictedBounds.put(chunkKey(c.cx, c.cy), b);
+                evictedBoundsTotal = union(evictedBoundsTotal, b);
+                if (touches(b, loadedBounds)) {
+                    shouldRecomputeLoaded = true;
+                }
+            }
+            evicted(c);
+        }
+    }
+
+    /**
+     * Called after a chunk is evicted. Override this to save dirty chunks
+     * before they are lost.
+     *
+     * @param c The evicted chunk.
+     */
+    protected void evicted(Chunk<T> c) {
+    }
+
+    // The packed z bounds of every chunk, loaded or evicted
+    long bounds() {
+        if (shouldRecomputeLoaded) {
+            loadedBounds = EMPTY_BOUNDS;
+            for (Chunk<T> c : chunks.values()) {
+                loadedBounds = union(loadedBounds, c.bounds());
+            }
+            shouldRecomputeLoaded = false;
+        }
+        if (shouldRecomputeEvicted) {
+            evictedBoundsTotal = EMPTY_BOUNDS;
+            for (long b : evictedBounds.values()) {
+                evictedBoundsTotal = union(evictedBoundsTotal, b);
+            }
+            shouldRecomputeEvicted = false;
+        }
+        return union(loadedBounds, evictedBoundsTotal);
+    }
+
+    // Marks the chunk of the last edit as changed, since the edit may have grown or shrunk its bounds
+    private void edited() {
+        lastChunk.dirty = true;
+        lastChunk.shouldRecomputeBounds = true;
+        shouldRecomputeLoaded = true;
+    }
+
+    @Override
+    public int maxZ() {
+        return maxBound(bounds());
+    }
+
+    static int maxBound(long bounds) {
+        return (int) (bounds >> 32);
+    }
+
+    @Override
+    public int minZ() {
+        return minBound(bounds());
+    }
+
+    static int minBound(long bounds) {
+        return (int) bounds;
+    }
+
+    static long packBounds(int minZ, int maxZ) {
+        return ((long) maxZ << 32) | (minZ & 0xFFFFFFFFL);
+    }
+
+    // Whether some of the given bounds lie on the edge of the total, so removing them could shrink it
+    static boolean touches(long bounds, long total) {
+        return minBound(bounds) <= minBound(total) || maxBound(bounds) >= maxBound(total);
+    }
+
+    static long union(long b1, long b2) {
+        return packBounds(Math.min(minBound(b1), minBound(b2)), Math.max(maxBound(b1), maxBound(b2)));
+    }
+
+    @Override
+    public T get(int x, int y, int z) {
+        return ic.fromInt(getInt(x, y, z));
+    }
+
+    @Override
+    public int getInt(int x, int y, int z) {
+        RLEColumn<T> c = columnIfLoaded(x, y);
+        return c == null ? nullCode : c.getInt(z);
+    }
+
+    @Override
+    public boolean rangeEquals(int x, int y, int zMin, int zMax, T t) {
+        return rangeEqualsInt(x, y, zMin, zMax, ic.toInt(t));
+    }
+
+    @Override
+    public boolean rangeEqualsInt(int x, int y, int zMin, int zMax, int i) {
+        RLEColumn<T> c = columnIfLoaded(x, y);
+        return c == null ? i == nullCode : c.rangeEqualsInt(zMin, zMax, i);
+    }
+
+    @Override
+    public void set(int x, int y, int z, T t) {
+        super.set(x, y, z, t);
+        edited();
+    }
+
+    @Override
+    public void setInt(int x, int y, int z, int i) {
+        super.setInt(x, y, z, i);
+        edited();
+    }
+
+    @Override
+    public void setRange(int x, int y, int zMin, int zMax, T t) {
+        super.setRange(x, y, zMin, zMax, t);
+        edited();
+    }
+
+    @Override
+    public void setRangeInt(int x, int y, int zMin, int zMax, int i) {
+        super.setRangeInt(x, y, zMin, zMax, i);
+        edited();
+    }
+
+    @Override
+    public void setRangeInfinite(int x, int y, int zMax, T t) {
+        super.setRangeInfinite(x, y, zMax, t);
+        edited();
+    }
+
+    @Override
+    public void setRangeInfiniteInt(int x, int y, int zMax, int i) {
+        super.setRangeInfiniteInt(x, y, zMax, i);
+        edited();
+    }
+
+    public static class Chunk<T> {
+
+        public final int cx, cy;
+        /**
+         * Whether any column in the chunk was edited since the chunk was
+         * created. Whoever saves the chunk should clear this.
+         */
+        public boolean dirty;
+
+        final RLEColumn<T>[] columns = new RLEColumn[CHUNK_SIZE * CHUNK_SIZE];
+        private long lastAccess;
+        private long bounds;
+        private boolean shouldRecomputeBounds = true;
+
+        public Chunk(int cx, int cy) {
+            this.cx = cx;
+            this.cy = cy;
+        }
+
+        public Stream<RLEColumn<T>> columns() {
+            return Arrays.stream(columns).filter(Objects::nonNull);
+        }
+
+        // The packed z bounds of the chunk's runs, cached until it is edited
+        long bounds() {
+            if (shouldRecomputeBounds) {
+                int minZ = Integer.MAX_VALUE, maxZ = Integer.MIN_VALUE;
+                for (RLEColumn<T> c : columns) {
+                    if (c != null && !c.isEmpty()) {
+                        minZ = Math.min(minZ, c.minPos());
+                        maxZ = Math.max(maxZ, c.maxPos());
+                    }
+                }
+                bounds = packBounds(minZ, maxZ);
+                shouldRecomputeBounds = false;
+            }
+            return bounds;
+        }
+
+        /**
+         * Returns the highest position of any run in the chunk, or
+         * Integer.MIN_VALUE if it is empty.
+         *
+         * @return The highest position.
+         */
+        public int maxZ() {
+            return maxBound(bounds());
+        }
+
+        /**
+         * Returns the lowest position of any run in the chunk, or
+         * Integer.MAX_VALUE if it is empty.
+         *
+         * @return The lowest position.
+         */
+        public int minZ() {
+            return minBound(bounds());
+        }
+    }
+}
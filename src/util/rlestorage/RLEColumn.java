@@ -1,46 +1,56 @@
 package util.rlestorage;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 public class RLEColumn<T> implements Iterable<Entry<Integer, T>> {
 
+    private static final long[] EMPTY = {};
+
     public final int x, y;
 
     /*
     Each element in data is a compressed representation of a paired position
     and block. The position occupies the lower 32 bits of the long, and the
-    block ID occupies the upper 32 bits of the long.
+    block ID occupies the upper 32 bits of the long. Each element is the top of
+    a run that starts just above the previous element's position, the first
+    run extends down forever, and everything above the last run is empty.
+    Edits splice runs directly into data, which has spare capacity at the end
+    like an ArrayList, and neighbouring runs of the same block are merged.
      */
-    private long[] data = {};
+    private long[] data = EMPTY;
+    private int size;
     private final IntConverter<T> ic;
+    private final int nullCode;
+    // Whether the column changed since it was last loaded or saved
+    boolean dirty;
 
     public RLEColumn(int x, int y, IntConverter<T> ic) {
         this.x = x;
         this.y = y;
         this.ic = ic;
+        nullCode = ic.toInt(null);
     }
 
     private T blockType(long d) {
-        return ic.fromInt((int) (d >>> 32));
+        return ic.fromInt(code(d));
     }
 
-    private TreeMap<Integer, T> dataTree() {
-        TreeMap<Integer, T> r = new TreeMap();
-        for (long d : data) {
-            r.put(position(d), blockType(d));
-        }
-        return r;
+    static int code(long d) {
+        return (int) (d >>> 32);
+    }
+
+    private int codeAt(int i) {
+        return i == size ? nullCode : code(data[i]);
     }
 
     private int findIndexAbove(int pos) {
         int low = 0;
-        int high = data.length;
+        int high = size;
         while (low < high) {
-            int check = (low + high) / 2;
+            int check = (low + high) >>> 1;
             int checkPos = position(data[check]);
             if (checkPos == pos) {
                 return check;
@@ -53,17 +63,47 @@ public class RLEColumn<T> implements Iterable<Entry<Integer, T>> {
         return low;
     }
 
+    public IntConverter<T> converter() {
+        return ic;
+    }
+
+    // A copy with room for one splice, for copy-on-write edits
+    RLEColumn<T> copy() {
+        RLEColumn<T> r = new RLEColumn(x, y, ic);
+        r.data = Arrays.copyOf(data, size + 2);
+        r.size = size;
+        return r;
+    }
+
+    /**
+     * Returns a cursor over the runs of this column.
+     *
+     * @return The cursor.
+     */
+    public Cursor<T> cursor() {
+        return new Cursor<T>().reset(this);
+    }
+
+    /**
+     * Returns the int that empty voxels are stored as, which is what the
+     * column's IntConverter turns null into.
+     *
+     * @return The empty int.
+     */
+    public int emptyInt() {
+        return nullCode;
+    }
+
     T get(int pos) {
-        int i = findIndexAbove(pos);
-        if (i == data.length) {
-            return null;
-        } else {
-            return blockType(data[i]);
-        }
+        return ic.fromInt(getInt(pos));
+    }
+
+    int getInt(int pos) {
+        return codeAt(findIndexAbove(pos));
     }
 
     public boolean isEmpty() {
-        return data.length == 0;
+        return size == 0;
     }
 
     @Override
@@ -73,7 +113,7 @@ public class RLEColumn<T> implements Iterable<Entry<Integer, T>> {
 
             @Override
             public boolean hasNext() {
-                return pos < data.length;
+                return pos < size;
             }
 
             @Override
@@ -86,67 +126,169 @@ public class RLEColumn<T> implements Iterable<Entry<Integer, T>> {
         };
     }
 
-    private long makeData(int pos, T t) {
-        return pos + ((long) ic.toInt(t) << 32);
+    private static long makeData(int pos, int code) {
+        return (pos & 0xFFFFFFFFL) | ((long) code << 32);
+    }
+
+    // Replaces the runs with ones read from storage, taking ownership of the array
+    void load(long[] data, int size) {
+        this.data = size == 0 ? EMPTY : data;
+        this.size = size;
+        dirty = false;
     }
 
     public int maxPos() {
-        return position(data[data.length - 1]);
+        return position(data[size - 1]);
+    }
+
+    // Drops the element at i if the run above it holds the same block
+    private void mergeUp(int i) {
+        if (i >= 0 && i < size && codeAt(i + 1) == code(data[i])) {
+            System.arraycopy(data, i + 1, data, i, size - i - 1);
+            size--;
+        }
     }
 
     public int minPos() {
         return position(data[0]);
     }
 
-    private int position(long d) {
-        return (int) (d & 0xFFFFFFFF);
+    static int position(long d) {
+        return (int) d;
+    }
+
+    // The packed runs, shared rather than copied, for saving
+    long[] runs() {
+        return data;
+    }
+
+    int runCount() {
+        return size;
     }
 
     boolean rangeEquals(int posMin, int posMax, T t) {
+        return rangeEqualsInt(posMin, posMax, ic.toInt(t));
+    }
+
+    boolean rangeEqualsInt(int posMin, int posMax, int i) {
         int i1 = findIndexAbove(posMin);
         int i2 = findIndexAbove(posMax);
-        return (i1 == i2 && ((t == null && i2 == data.length) || blockType(data[i2]) == t));
+        return i1 == i2 && codeAt(i2) == i;
     }
 
     void set(int pos, T t) {
-        TreeMap<Integer, T> dataTree = dataTree();
-        dataTree.put(pos - 1, get(pos - 1));
-        dataTree.put(pos, t);
-        setDataTree(dataTree);
+        splice(pos, pos, false, ic.toInt(t));
+    }
+
+    void setInt(int pos, int i) {
+        splice(pos, pos, false, i);
     }
 
     void setRange(int posMin, int posMax, T t) {
-        TreeMap<Integer, T> dataTree = dataTree();
-        dataTree.put(posMin - 1, get(posMin - 1));
-        dataTree.subMap(posMin, posMax).clear();
-        dataTree.put(posMax, t);
-        setDataTree(dataTree);
+        splice(posMin, posMax, false, ic.toInt(t));
+    }
+
+    void setRangeInt(int posMin, int posMax, int i) {
+        splice(posMin, posMax, false, i);
     }
 
     void setRangeInfinite(int posMax, T t) {
-        TreeMap<Integer, T> dataTree = dataTree();
-        dataTree.headMap(posMax).clear();
-        dataTree.put(posMax, t);
-        setDataTree(dataTree);
-    }
-
-    private void setDataTree(TreeMap<Integer, T> dataTree) {
-        Iterator<Map.Entry<Integer, T>> iterator = dataTree.descendingMap().entrySet().iterator();
-        T prev = null;
-        while (iterator.hasNext()) {
-            T t = iterator.next().getValue();
-            if (t == prev) {
-                iterator.remove();
+        splice(posMax, posMax, true, ic.toInt(t));
+    }
+
+    void setRangeInfiniteInt(int posMax, int i) {
+        splice(posMax, posMax, true, i);
+    }
+
+    // Sets every position from posMin (or from below everything, if infinite) to posMax to code
+    private void splice(int posMin, int posMax, boolean infinite, int code) {
+        if (posMin > posMax) {
+            throw new RuntimeException("posMin " + posMin + " is above posMax " + posMax);
+        }
+        int i = infinite ? 0 : findIndexAbove(posMin);
+        int j = findIndexAbove(posMax);
+        if (!infinite && i == j && codeAt(i) == code) {
+            return;
+        }
+        // The run below posMin needs its own element, unless one already ends there
+        boolean splitBelow = !infinite && (i == 0 || position(data[i - 1]) != posMin - 1);
+        int end = j < size && position(data[j]) == posMax ? j + 1 : j;
+        int newSize = size - (end - i) + (splitBelow ? 2 : 1);
+        long below = splitBelow ? makeData(posMin - 1, codeAt(i)) : 0;
+        if (newSize > data.length) {
+            data = Arrays.copyOf(data, Math.max(newSize, Math.max(4, 2 * data.length)));
+        }
+        int at = i + (splitBelow ? 1 : 0);
+        System.arraycopy(data, end, data, at + 1, size - end);
+        if (splitBelow) {
+            data[i] = below;
+        }
+        data[at] = makeData(posMax, code);
+        size = newSize;
+        dirty = true;
+        mergeUp(at);
+        mergeUp(at - 1);
+        mergeUp(i - 1);
+        while (size > 0 && code(data[size - 1]) == nullCode) {
+            size--;
+        }
+    }
+
+    /**
+     * Walks the runs of a column from the bottom up without allocating or
+     * boxing. Each run ends at position() and holds intValue(), as stored by
+     * the column's IntConverter. A cursor can be reset onto another column,
+     * so one cursor can serve any number of columns. Editing a column while a
+     * cursor is walking it gives undefined results.
+     *
+     * @param <T> The type of voxel stored in the column.
+     */
+    public static class Cursor<T> {
+
+        private RLEColumn<T> column;
+        private int index;
+        private long run;
+
+        public int intValue() {
+            return code(run);
+        }
+
+        public boolean isEmpty() {
+            return code(run) == column.nullCode;
+        }
+
+        /**
+         * Moves to the next run up the column.
+         *
+         * @return False once there are no more runs.
+         */
+        public boolean next() {
+            if (column == null || index + 1 >= column.size) {
+                return false;
             }
-            prev = t;
+            run = column.data[++index];
+            return true;
+        }
+
+        public int position() {
+            return RLEColumn.position(run);
         }
-        data = new long[dataTree.size()];
-        iterator = dataTree.entrySet().iterator();
-        int i = 0;
-        while (iterator.hasNext()) {
-            Map.Entry<Integer, T> e = iterator.next();
-            data[i] = makeData(e.getKey(), e.getValue());
-            i++;
+
+        /**
+         * Moves the cursor to just before the first run of a column. A null
+         * column is treated as having no runs.
+         *
+         * @param column The column to walk.
+         * @return This cursor.
+         */
+        public Cursor<T> reset(RLEColumn<T> column) {
+            this.column = column;
+            index = -1;
+            return this;
+        }
+
+        public T value() {
+            return column.ic.fromInt(code(run));
         }
     }
 }
@@ -0,0 +1,165 @@
+package util.rlestorage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A storage that any number of threads can read and edit at once. Each
+ * column is copy-on-write: an edit copies the column, changes the copy and
+ * then publishes it in place of the original, so a column returned by
+ * columnAt is never changed afterwards and can be read without locking.
+ * Edits to the same column are serialized by a set of striped locks, and
+ * edits to different columns mostly run in parallel. Since every edit copies
+ * its column, this suits columns of up to a few hundred runs.
+ *
+ * @param <T> The type of voxel stored.
+ */
+public class RLEConcurrentStorage<T> extends RLEStorage<T> {
+
+    private static final int STRIPES = 64;
+
+    private final IntConverter<T> ic;
+    private final int nullCode;
+    private final ConcurrentHashMap<Long, RLEColumn<T>> columns = new ConcurrentHashMap();
+    private final Object[] locks = new Object[STRIPES];
+
+    private volatile boolean shouldRecomputeMinMax = true;
+    private int maxZ, minZ;
+
+    public RLEConcurrentStorage(IntConverter<T> ic) {
+        this.ic = ic;
+        nullCode = ic.toInt(null);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public Stream<RLEColumn<T>> allColumns() {
+        return columns.values().stream();
+    }
+
+    /**
+     * Returns a snapshot of the column at x, y, creating an empty one if
+     * there isn't one yet. The snapshot never changes, even if the column is
+     * edited afterwards; call this again to see the edits.
+     *
+     * @param x The x coordinate of the column.
+     * @param y The y coordinate of the column.
+     * @return The column.
+     */
+    @Override
+    public RLEColumn<T> columnAt(int x, int y) {
+        RLEColumn<T> c = columns.get(key(x, y));
+        return c != null ? c : columns.computeIfAbsent(key(x, y), k -> new RLEColumn(x, y, ic));
+    }
+
+    /**
+     * Returns a snapshot of the column at x, y, or null if it was never
+     * written.
+     *
+     * @param x The x coordinate of the column.
+     * @param y The y coordinate of the column.
+     * @return The column, or null.
+     */
+    public RLEColumn<T> columnIfPresent(int x, int y) {
+        return columns.get(key(x, y));
+    }
+
+    private void edit(int x, int y, Consumer<RLEColumn<T>> edit) {
+        long key = key(x, y);
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        synchronized (locks[h >>> 26]) {
+            RLEColumn<T> c = columns.get(key);
+            c = c == null ? new RLEColumn(x, y, ic) : c.copy();
+            edit.accept(c);
+            columns.put(key, c);
+        }
+        shouldRecomputeMinMax = true;
+    }
+
+    @Override
+    public T get(int x, int y, int z) {
+        return ic.fromInt(getInt(x, y, z));
+    }
+
+    @Override
+    public int getInt(int x, int y, int z) {
+        RLEColumn<T> c = columnIfPresent(x, y);
+        return c == null ? nullCode : c.getInt(z);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public int maxZ() {
+        recomputeMinMax();
+        return maxZ;
+    }
+
+    @Override
+    public int minZ() {
+        recomputeMinMax();
+        return minZ;
+    }
+
+    @Override
+    public boolean rangeEquals(int x, int y, int zMin, int zMax, T t) {
+        return rangeEqualsInt(x, y, zMin, zMax, ic.toInt(t));
+    }
+
+    @Override
+    public boolean rangeEqualsInt(int x, int y, int zMin, int zMax, int i) {
+        RLEColumn<T> c = columnIfPresent(x, y);
+        return c == null ? i == nullCode : c.rangeEqualsInt(zMin, zMax, i);
+    }
+
+    private synchronized void recomputeMinMax() {
+        if (shouldRecomputeMinMax) {
+            // Cleared first, so an edit made during the walk makes the next call recompute again
+            shouldRecomputeMinMax = false;
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (RLEColumn<T> c : columns.values()) {
+                if (!c.isEmpty()) {
+                    min = Math.min(min, c.minPos());
+                    max = Math.max(max, c.maxPos());
+                }
+            }
+            minZ = min;
+            maxZ = max;
+        }
+    }
+
+    @Override
+    public void set(int x, int y, int z, T t) {
+        setInt(x, y, z, ic.toInt(t));
+    }
+
+    @Override
+    public void setInt(int x, int y, int z, int i) {
+        edit(x, y, c -> c.setInt(z, i));
+    }
+
+    @Override
+    public void setRange(int x, int y, int zMin, int zMax, T t) {
+        setRangeInt(x, y, zMin, zMax, ic.toInt(t));
+    }
+
+    @Override
+    public void setRangeInt(int x, int y, int zMin, int zMax, int i) {
+        edit(x, y, c -> c.setRangeInt(zMin, zMax, i));
+    }
+
+    @Override
+    public void setRangeInfinite(int x, int y, int zMax, T t) {
+        setRangeInfiniteInt(x, y, zMax, ic.toInt(t));
+    }
+
+    @Override
+    public void setRangeInfiniteInt(int x, int y, int zMax, int i) {
+        edit(x, y, c -> c.setRangeInfiniteInt(zMax, i));
+    }
+}
@@ -19,8 +19,13 @@ public class RLEMapStorage<T> extends RLEStorage<T> {
 
     @Override
     public RLEColumn<T> columnAt(int x, int y) {
-        columnMap.putIfAbsent(new IntPos(x, y), new RLEColumn(x, y, ic));
-        return columnMap.get(new IntPos(x, y));
+        IntPos key = new IntPos(x, y);
+        RLEColumn<T> c = columnMap.get(key);
+        if (c == null) {
+            c = new RLEColumn(x, y, ic);
+            columnMap.put(key, c);
+        }
+        return c;
     }
 
     private static class IntPos {
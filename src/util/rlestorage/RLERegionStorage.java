@@ -0,0 +1,193 @@
+package util.rlestorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static util.rlestorage.RegionFile.REGION_BITS;
+import static util.rlestorage.RegionFile.REGION_CHUNK_BITS;
+import static util.rlestorage.RegionFile.REGION_SIZE;
+import util.LongMap;
+
+/**
+ * A chunked storage that is saved to a folder of memory mapped region files.
+ * Chunks are read from their region the first time one of their columns is
+ * asked for, and edited chunks are written back when they are evicted or
+ * when save is called. Only the columns that changed are written. Calling
+ * get or rangeEquals on a chunk that isn't loaded reads the runs straight
+ * from the mapped file, without loading anything. Each region file keeps the
+ * z bounds of its chunks, so minZ and maxZ count chunks that were saved by an
+ * earlier run.
+ *
+ * @param <T> The type of voxel stored.
+ */
+public class RLERegionStorage<T> extends RLEChunkedStorage<T> implements Closeable {
+
+    public final Path folder;
+
+    private final LongMap<RegionFile> regions = new LongMap();
+    // Regions known to have no file yet, so reads don't keep checking the disk
+    private final LongMap<Boolean> missingRegions = new LongMap();
+    private boolean allRegionsOpen;
+    // The combined bounds of the saved chunks that aren't loaded, from each region's running bounds
+    private long regionBounds = EMPTY_BOUNDS;
+    private boolean shouldRecomputeRegionBounds = true;
+
+    public RLERegionStorage(Path folder, IntConverter<T> ic) {
+        super(ic);
+        this.folder = folder;
+        try {
+            Files.createDirectories(folder);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Saves every edited chunk and closes the region files.
+     */
+    @Override
+    public void close() {
+        save();
+        for (RegionFile r : regions.values()) {
+            r.close();
+        }
+        regions.clear();
+        allRegionsOpen = false;
+        shouldRecomputeRegionBounds = true;
+    }
+
+    @Override
+    protected Chunk<T> createChunk(int cx, int cy) {
+        Chunk<T> c = super.createChunk(cx, cy);
+        int x0 = cx << CHUNK_BITS, y0 = cy << CHUNK_BITS;
+        RegionFile r = region(x0, y0, false);
+        if (r == null) {
+            return c;
+        }
+        r.setLoaded(cx, cy, true);
+        shouldRecomputeRegionBounds = true;
+        for (int x = x0; x < x0 + CHUNK_SIZE; x++) {
+            for (int y = y0; y < y0 + CHUNK_SIZE; y++) {
+                int count = r.runCount(regionIndex(x, y));
+                if (count > 0) {
+                    RLEColumn<T> column = new RLEColumn(x, y, ic);
+                    column.load(r.read(regionIndex(x, y)), count);
+                    c.columns[columnIndex(x, y)] = column;
+                }
+            }
+        }
+        return c;
+    }
+
+    @Override
+    protected void evicted(Chunk<T> c) {
+        save(c);
+        RegionFile r = region(c.cx << CHUNK_BITS, c.cy << CHUNK_BITS, false);
+        if (r != null) {
+            r.setLoaded(c.cx, c.cy, false);
+            shouldRecomputeRegionBounds = true;
+        }
+    }
+
+    @Override
+    long bounds() {
+        long b = super.bounds();
+        if (shouldRecomputeRegionBounds) {
+            regionBounds = EMPTY_BOUNDS;
+            for (RegionFile r : allRegions()) {
+                regionBounds = union(regionBounds, r.bounds());
+            }
+            shouldRecomputeRegionBounds = false;
+        }
+        return union(b, regionBounds);
+    }
+
+    // Opens every region file in the folder, since chunks from earlier runs may be in any of them
+    private Iterable<RegionFile> allRegions() {
+        if (!allRegionsOpen) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "r.*.*.rle")) {
+                for (Path file : files) {
+                    String[] parts = file.getFileName().toString().split("\\.");
+                    region(Integer.parseInt(parts[1]) << REGION_BITS, Integer.parseInt(parts[2]) << REGION_BITS, false);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            allRegionsOpen = true;
+        }
+        return regions.values();
+    }
+
+    @Override
+    public int getInt(int x, int y, int z) {
+        if (chunkIfLoaded(x, y) != null) {
+            return super.getInt(x, y, z);
+        }
+        RegionFile r = region(x, y, false);
+        return r == null ? nullCode : r.codeAt(regionIndex(x, y), z, nullCode);
+    }
+
+    @Override
+    public boolean rangeEqualsInt(int x, int y, int zMin, int zMax, int i) {
+        if (chunkIfLoaded(x, y) != null) {
+            return super.rangeEqualsInt(x, y, zMin, zMax, i);
+        }
+        RegionFile r = region(x, y, false);
+        return r == null ? i == nullCode : r.rangeEquals(regionIndex(x, y), zMin, zMax, i, nullCode);
+    }
+
+    private RegionFile region(int x, int y, boolean create) {
+        long key = ((long) (x >> REGION_BITS) << 32) | ((y >> REGION_BITS) & 0xFFFFFFFFL);
+        RegionFile r = regions.get(key);
+        if (r == null && (create || missingRegions.get(key) == null)) {
+            Path path = folder.resolve("r." + (x >> REGION_BITS) + "." + (y >> REGION_BITS) + ".rle");
+            if (create || Files.exists(path)) {
+                r = new RegionFile(path, x >> REGION_BITS, y >> REGION_BITS);
+                regions.put(key, r);
+                missingRegions.remove(key);
+                for (int cx = r.rx << REGION_CHUNK_BITS; cx < (r.rx + 1) << REGION_CHUNK_BITS; cx++) {
+                    for (int cy = r.ry << REGION_CHUNK_BITS; cy < (r.ry + 1) << REGION_CHUNK_BITS; cy++) {
+                        if (isLoaded(cx, cy)) {
+                            r.setLoaded(cx, cy, true);
+                        }
+                    }
+                }
+                shouldRecomputeRegionBounds = true;
+            } else {
+                missingRegions.put(key, true);
+            }
+        }
+        return r;
+    }
+
+    private static int regionIndex(int x, int y) {
+        return ((x & (REGION_SIZE - 1)) << REGION_BITS) | (y & (REGION_SIZE - 1));
+    }
+
+    /**
+     * Writes every edited column of the loaded chunks to disk.
+     */
+    public void save() {
+        allChunks().forEach(this::save);
+        for (RegionFile r : regions.values()) {
+            r.force();
+        }
+    }
+
+    private void save(Chunk<T> c) {
+        if (!c.dirty) {
+            return;
+        }
+        RegionFile r = region(c.cx << CHUNK_BITS, c.cy << CHUNK_BITS, true);
+        for (RLEColumn<T> column : c.columns) {
+            if (column != null && column.dirty) {
+                r.write(regionIndex(column.x, column.y), column.runs(), column.runCount());
+                column.dirty = false;
+            }
+        }
+        r.setChunkBounds(c.cx, c.cy, packBounds(c.minZ(), c.maxZ()));
+        c.dirty = false;
+    }
+}
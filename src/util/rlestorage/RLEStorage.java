@@ -17,22 +17,25 @@ public abstract class RLEStorage<T> {
         return columnAt(x, y).iterator();
     }
 
+    // Copying assumes both storages use the same IntConverter
     public void copyTo(RLEStorage<T> other, int x, int y, int z) {
+        RLEColumn.Cursor<T> cursor = new RLEColumn.Cursor();
         allColumns().forEach(c -> {
-            RLEColumn<T> c2 = other.columnAt(c.x + x, c.y + y);
-            if (c2 != null) {
-                Iterator<Entry<Integer, T>> iterator = c.iterator();
-                Entry<Integer, T> prev = null;
-                while (iterator.hasNext()) {
-                    Entry<Integer, T> e = iterator.next();
-                    if (prev == null) {
-                        if (e.getValue() != null) {
-                            c2.setRangeInfinite(e.getKey() + z, e.getValue());
+            // Goes through other's setters, so storages that track edits see them
+            if (other.columnAt(c.x + x, c.y + y) != null) {
+                cursor.reset(c);
+                boolean first = true;
+                int prevPos = 0;
+                while (cursor.next()) {
+                    if (first) {
+                        if (!cursor.isEmpty()) {
+                            other.setRangeInfiniteInt(c.x + x, c.y + y, cursor.position() + z, cursor.intValue());
                         }
                     } else {
-                        c2.setRange(prev.getKey() + z + 1, e.getKey() + z, e.getValue());
+                        other.setRangeInt(c.x + x, c.y + y, prevPos + z + 1, cursor.position() + z, cursor.intValue());
                     }
-                    prev = e;
+                    first = false;
+                    prevPos = cursor.position();
                 }
             }
         });
@@ -42,6 +45,19 @@ public abstract class RLEStorage<T> {
         return columnAt(x, y).get(z);
     }
 
+    /**
+     * Returns the voxel at a position as the int it is stored as, without
+     * boxing it.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The stored int.
+     */
+    public int getInt(int x, int y, int z) {
+        return columnAt(x, y).getInt(z);
+    }
+
     public int maxZ() {
         recomputeMinMax();
         return maxZ;
@@ -56,6 +72,10 @@ public abstract class RLEStorage<T> {
         return columnAt(x, y).rangeEquals(zMin, zMax, t);
     }
 
+    public boolean rangeEqualsInt(int x, int y, int zMin, int zMax, int i) {
+        return columnAt(x, y).rangeEqualsInt(zMin, zMax, i);
+    }
+
     private void recomputeMinMax() {
         if (shouldRecomputeMinMax) {
             minZ = Integer.MAX_VALUE;
@@ -75,13 +95,28 @@ public abstract class RLEStorage<T> {
         shouldRecomputeMinMax = true;
     }
 
+    public void setInt(int x, int y, int z, int i) {
+        columnAt(x, y).setInt(z, i);
+        shouldRecomputeMinMax = true;
+    }
+
     public void setRange(int x, int y, int zMin, int zMax, T t) {
         columnAt(x, y).setRange(zMin, zMax, t);
         shouldRecomputeMinMax = true;
     }
 
+    public void setRangeInt(int x, int y, int zMin, int zMax, int i) {
+        columnAt(x, y).setRangeInt(zMin, zMax, i);
+        shouldRecomputeMinMax = true;
+    }
+
     public void setRangeInfinite(int x, int y, int zMax, T t) {
         columnAt(x, y).setRangeInfinite(zMax, t);
         shouldRecomputeMinMax = true;
     }
+
+    public void setRangeInfiniteInt(int x, int y, int zMax, int i) {
+        columnAt(x, y).setRangeInfiniteInt(zMax, i);
+        shouldRecomputeMinMax = true;
+    }
 }
@@ -0,0 +1,207 @@
+package util.rlestorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class RegionFile implements Closeable {
+
+    /*
+    A region file holds the columns of a REGION_SIZE by REGION_SIZE square,
+    and is memory mapped as a whole. It starts with a header (magic number,
+    version, the byte offset where the run data ends, and the packed z bounds
+    of each chunk in the region, so they are known without reading any
+    runs), followed by an index table with two ints per column: the offset of the column's runs, in
+    longs from the start of the run data, and the number of runs. The runs are
+    the packed longs of RLEColumn, in little endian order. A rewritten column
+    goes back in its old place if it fits, and is appended after the run data
+    otherwise, so saving only touches the columns that changed.
+     */
+    static final int REGION_BITS = 9;
+    static final int REGION_SIZE = 1 << REGION_BITS;
+    static final int REGION_CHUNK_BITS = REGION_BITS - RLEChunkedStorage.CHUNK_BITS;
+    static final int REGION_CHUNKS = 1 << REGION_CHUNK_BITS;
+
+    private static final int MAGIC = 0x524c4552;
+    private static final int VERSION = 2;
+    private static final int BOUNDS_START = 16;
+    private static final int HEADER_BYTES = BOUNDS_START + 8 * REGION_CHUNKS * REGION_CHUNKS;
+    private static final long DATA_START = HEADER_BYTES + 8L * REGION_SIZE * REGION_SIZE;
+    private static final long MIN_GROWTH = 1 << 20;
+
+    final int rx, ry;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private IntBuffer table;
+    private LongBuffer runs;
+    private long dataEnd;
+    // Chunks whose bounds are kept by the storage while they are loaded, so the ones saved here may be stale
+    private final boolean[] loaded = new boolean[REGION_CHUNKS * REGION_CHUNKS];
+    private long bounds;
+    private boolean shouldRecomputeBounds = true;
+
+    RegionFile(Path path, int rx, int ry) {
+        this.rx = rx;
+        this.ry = ry;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            if (channel.size() == 0) {
+                map(DATA_START + MIN_GROWTH);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                dataEnd = DATA_START;
+                buffer.putLong(8, dataEnd);
+                for (int i = 0; i < REGION_CHUNKS * REGION_CHUNKS; i++) {
+                    buffer.putLong(BOUNDS_START + 8 * i, RLEChunkedStorage.EMPTY_BOUNDS);
+                }
+            } else {
+                map(channel.size());
+                if (buffer.getInt(0) != MAGIC) {
+                    throw new RuntimeException("Not a region file: " + path);
+                }
+                if (buffer.getInt(4) != VERSION) {
+                    throw new RuntimeException("Unsupported region file version: " + buffer.getInt(4));
+                }
+                dataEnd = buffer.getLong(8);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    // The packed z bounds of every chunk in the region that isn't loaded
+    long bounds() {
+        if (shouldRecomputeBounds) {
+            bounds = RLEChunkedStorage.EMPTY_BOUNDS;
+            for (int i = 0; i < loaded.length; i++) {
+                if (!loaded[i]) {
+                    bounds = RLEChunkedStorage.union(bounds, buffer.getLong(BOUNDS_START + 8 * i));
+                }
+            }
+            shouldRecomputeBounds = false;
+        }
+        return bounds;
+    }
+
+    private static int chunkIndex(int cx, int cy) {
+        return ((cx & (REGION_CHUNKS - 1)) << REGION_CHUNK_BITS) | (cy & (REGION_CHUNKS - 1));
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        table = null;
+        runs = null;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    // Finds the block code at a position straight from the mapped runs, without loading the column
+    int codeAt(int column, int pos, int nullCode) {
+        int i = findIndexAbove(column, pos);
+        return i == runCount(column) ? nullCode : RLEColumn.code(runs.get(table.get(2 * column) + i));
+    }
+
+    private int findIndexAbove(int column, int pos) {
+        int offset = table.get(2 * column);
+        int low = 0;
+        int high = runCount(column);
+        while (low < high) {
+            int check = (low + high) >>> 1;
+            int checkPos = RLEColumn.position(runs.get(offset + check));
+            if (checkPos == pos) {
+                return check;
+            } else if (checkPos > pos) {
+                high = check;
+            } else {
+                low = check + 1;
+            }
+        }
+        return low;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new RuntimeException("Region file is too large to map");
+        }
+        buffer = channel.map(MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        table = ((ByteBuffer) buffer.duplicate().position(HEADER_BYTES)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        runs = ((ByteBuffer) buffer.duplicate().position((int) DATA_START)).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    void setChunkBounds(int cx, int cy, long bounds) {
+        int i = chunkIndex(cx, cy);
+        buffer.putLong(BOUNDS_START + 8 * i, bounds);
+        if (!loaded[i]) {
+            shouldRecomputeBounds = true;
+        }
+    }
+
+    void setLoaded(int cx, int cy, boolean loaded) {
+        int i = chunkIndex(cx, cy);
+        if (this.loaded[i] != loaded) {
+            this.loaded[i] = loaded;
+            long b = buffer.getLong(BOUNDS_START + 8 * i);
+            if (!loaded) {
+                bounds = RLEChunkedStorage.union(bounds, b);
+            } else if (RLEChunkedStorage.touches(b, bounds)) {
+                shouldRecomputeBounds = true;
+            }
+        }
+    }
+
+    // Checks a range straight from the mapped runs, the same way RLEColumn.rangeEqualsInt does
+    boolean rangeEquals(int column, int posMin, int posMax, int code, int nullCode) {
+        int i = findIndexAbove(column, posMin);
+        return i == findIndexAbove(column, posMax) && codeAt(column, posMax, nullCode) == code;
+    }
+
+    long[] read(int column) {
+        long[] r = new long[runCount(column)];
+        runs.position(table.get(2 * column));
+        runs.get(r);
+        return r;
+    }
+
+    int runCount(int column) {
+        return table.get(2 * column + 1);
+    }
+
+    void write(int column, long[] data, int size) {
+        int offset = table.get(2 * column);
+        if (size > runCount(column)) {
+            long end = dataEnd + 8L * size;
+            if (end > buffer.capacity()) {
+                try {
+                    map(Math.max(end, buffer.capacity() + Math.max(MIN_GROWTH, buffer.capacity() / 4)));
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            offset = (int) ((dataEnd - DATA_START) / 8);
+            dataEnd = end;
+            buffer.putLong(8, dataEnd);
+        }
+        runs.position(offset);
+        runs.put(data, 0, size);
+        table.put(2 * column, offset);
+        table.put(2 * column + 1, size);
+    }
+}